@@ -0,0 +1,42 @@
+package io.github.mattidragon.configloader.benchmark;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import io.github.mattidragon.configloader.api.DefaultedFieldCodec;
+import io.github.mattidragon.configloader.api.GenerateMutable;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+@GenerateMutable(generateCodec = true)
+public record BenchmarkConfig(String name, int count, boolean enabled, List<String> entries, Display display) implements MutableBenchmarkConfig.Source {
+    public static final BenchmarkConfig DEFAULT = new BenchmarkConfig("default", 0, false, List.of(), Display.DEFAULT);
+
+    public static final Codec<BenchmarkConfig> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+            DefaultedFieldCodec.of(Codec.STRING, "name", DEFAULT.name).forGetter(BenchmarkConfig::name),
+            DefaultedFieldCodec.of(Codec.INT, "count", DEFAULT.count).forGetter(BenchmarkConfig::count),
+            DefaultedFieldCodec.of(Codec.BOOL, "enabled", DEFAULT.enabled).forGetter(BenchmarkConfig::enabled),
+            DefaultedFieldCodec.of(Codec.STRING.listOf(), "entries", DEFAULT.entries).forGetter(BenchmarkConfig::entries),
+            DefaultedFieldCodec.of(Display.CODEC, "display", DEFAULT.display).forGetter(BenchmarkConfig::display)
+    ).apply(instance, BenchmarkConfig::new));
+
+    public static final Codec<BenchmarkConfig> STREAM_CODEC = new MutableBenchmarkConfig.StreamCodec(DEFAULT);
+
+    /**
+     * Creates a config with the given number of list entries.
+     */
+    public static BenchmarkConfig create(String name, int entries) {
+        return new BenchmarkConfig(name, entries, true, IntStream.range(0, entries).mapToObj(i -> "entry_" + i).toList(), new Display("label", 1.5, 3));
+    }
+
+    @GenerateMutable(generateCodec = true)
+    public record Display(String label, double scale, int columns) implements MutableBenchmarkConfig.MutableDisplay.Source {
+        public static final Display DEFAULT = new Display("", 1, 1);
+
+        public static final Codec<Display> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+                DefaultedFieldCodec.of(Codec.STRING, "label", DEFAULT.label).forGetter(Display::label),
+                DefaultedFieldCodec.of(Codec.DOUBLE, "scale", DEFAULT.scale).forGetter(Display::scale),
+                DefaultedFieldCodec.of(Codec.INT, "columns", DEFAULT.columns).forGetter(Display::columns)
+        ).apply(instance, Display::new));
+    }
+}
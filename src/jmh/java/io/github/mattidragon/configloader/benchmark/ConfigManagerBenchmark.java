@@ -0,0 +1,106 @@
+package io.github.mattidragon.configloader.benchmark;
+
+import io.github.mattidragon.configloader.api.ConfigManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks the common operations of a config manager on a small and a very large config, with both kinds of codecs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConfigManagerBenchmark {
+    @Param({"10", "10000"})
+    public int entries;
+    @Param({"record", "stream"})
+    public String codec;
+
+    private Path directory;
+    private ConfigManager<BenchmarkConfig> manager;
+    private BenchmarkConfig first;
+    private BenchmarkConfig second;
+    private byte[] firstFile;
+    private byte[] secondFile;
+    private boolean flip;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("configtoolkit-benchmark");
+        first = BenchmarkConfig.create("first", entries);
+        // The name has a different length, so the file size changes and reloads can't be skipped
+        second = BenchmarkConfig.create("second", entries);
+        manager = ConfigManager.builder(codec.equals("stream") ? BenchmarkConfig.STREAM_CODEC : BenchmarkConfig.CODEC, BenchmarkConfig.DEFAULT, "benchmark_" + codec + "_" + entries)
+                .directory(directory)
+                .build();
+
+        var path = directory.resolve(manager.getId() + ".json");
+        manager.set(second);
+        secondFile = Files.readAllBytes(path);
+        manager.set(first);
+        firstFile = Files.readAllBytes(path);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (var file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public BenchmarkConfig getContended() {
+        return manager.get();
+    }
+
+    @Benchmark
+    public BenchmarkConfig getUncontended() {
+        return manager.get();
+    }
+
+    @Benchmark
+    public void setAndSave() {
+        flip = !flip;
+        manager.set(flip ? second : first);
+    }
+
+    @Benchmark
+    public Object reloadUnchanged() {
+        return manager.reload();
+    }
+
+    /**
+     * Reloads after the file was replaced, going through reading, parsing and decoding.
+     * This is the same path as the initial load.
+     */
+    @Benchmark
+    public Object reloadChanged(EditedFile file) {
+        return manager.reload();
+    }
+
+    /**
+     * Swaps the contents of the config file before every invocation.
+     */
+    @State(Scope.Thread)
+    public static class EditedFile {
+        private boolean flip;
+
+        @Setup(Level.Invocation)
+        public void edit(ConfigManagerBenchmark benchmark) throws IOException {
+            flip = !flip;
+            Files.write(benchmark.directory.resolve(benchmark.manager.getId() + ".json"), flip ? benchmark.secondFile : benchmark.firstFile);
+        }
+    }
+}
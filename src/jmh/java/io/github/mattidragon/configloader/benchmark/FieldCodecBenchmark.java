@@ -0,0 +1,80 @@
+package io.github.mattidragon.configloader.benchmark;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.JsonOps;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import io.github.mattidragon.configloader.api.DefaultedFieldCodec;
+import io.github.mattidragon.configloader.api.DefaultedRecordCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding with {@link DefaultedFieldCodec} and {@link DefaultedRecordCodec} to {@link Codec#optionalFieldOf(String, Object)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldCodecBenchmark {
+    private static final Settings DEFAULT = new Settings(1, 2, "default", false, 0.5);
+
+    private static final Codec<Settings> DEFAULTED = RecordCodecBuilder.create(instance -> instance.group(
+            DefaultedFieldCodec.of(Codec.INT, "a", DEFAULT.a).forGetter(Settings::a),
+            DefaultedFieldCodec.of(Codec.INT, "b", DEFAULT.b).forGetter(Settings::b),
+            DefaultedFieldCodec.of(Codec.STRING, "c", DEFAULT.c).forGetter(Settings::c),
+            DefaultedFieldCodec.of(Codec.BOOL, "d", DEFAULT.d).forGetter(Settings::d),
+            DefaultedFieldCodec.of(Codec.DOUBLE, "e", DEFAULT.e).forGetter(Settings::e)
+    ).apply(instance, Settings::new));
+
+    private static final Codec<Settings> OPTIONAL = RecordCodecBuilder.create(instance -> instance.group(
+            Codec.INT.optionalFieldOf("a", DEFAULT.a).forGetter(Settings::a),
+            Codec.INT.optionalFieldOf("b", DEFAULT.b).forGetter(Settings::b),
+            Codec.STRING.optionalFieldOf("c", DEFAULT.c).forGetter(Settings::c),
+            Codec.BOOL.optionalFieldOf("d", DEFAULT.d).forGetter(Settings::d),
+            Codec.DOUBLE.optionalFieldOf("e", DEFAULT.e).forGetter(Settings::e)
+    ).apply(instance, Settings::new));
+
+    private static final DefaultedRecordCodec.Field<Settings, Integer> A = DefaultedRecordCodec.field(Codec.INT, "a", DEFAULT.a, Settings::a);
+    private static final DefaultedRecordCodec.Field<Settings, Integer> B = DefaultedRecordCodec.field(Codec.INT, "b", DEFAULT.b, Settings::b);
+    private static final DefaultedRecordCodec.Field<Settings, String> C = DefaultedRecordCodec.field(Codec.STRING, "c", DEFAULT.c, Settings::c);
+    private static final DefaultedRecordCodec.Field<Settings, Boolean> D = DefaultedRecordCodec.field(Codec.BOOL, "d", DEFAULT.d, Settings::d);
+    private static final DefaultedRecordCodec.Field<Settings, Double> E = DefaultedRecordCodec.field(Codec.DOUBLE, "e", DEFAULT.e, Settings::e);
+    private static final Codec<Settings> RECORD = DefaultedRecordCodec.of(List.of(A, B, C, D, E),
+            values -> new Settings(values.get(A), values.get(B), values.get(C), values.get(D), values.get(E))).codec();
+
+    @Param({"full", "empty"})
+    public String input;
+
+    private JsonElement json;
+
+    @Setup
+    public void setup() {
+        json = input.equals("full")
+                ? DEFAULTED.encodeStart(JsonOps.INSTANCE, new Settings(5, 6, "value", true, 2.5)).getOrThrow(false, error -> {})
+                : new JsonObject();
+    }
+
+    @Benchmark
+    public Settings decodeDefaulted() {
+        return DEFAULTED.parse(JsonOps.INSTANCE, json).getOrThrow(false, error -> {});
+    }
+
+    @Benchmark
+    public Settings decodeRecord() {
+        return RECORD.parse(JsonOps.INSTANCE, json).getOrThrow(false, error -> {});
+    }
+
+    @Benchmark
+    public Settings decodeOptional() {
+        return OPTIONAL.parse(JsonOps.INSTANCE, json).getOrThrow(false, error -> {});
+    }
+
+    public record Settings(int a, int b, String c, boolean d, double e) {
+    }
+}
@@ -0,0 +1,42 @@
+package io.github.mattidragon.configloader.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks round trips through generated mutable classes of nested records.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MutableBenchmark {
+    private BenchmarkConfig config;
+
+    @Setup
+    public void setup() {
+        config = BenchmarkConfig.create("config", 100);
+    }
+
+    @Benchmark
+    public BenchmarkConfig roundTripUnchanged() {
+        return config.toMutable().toImmutable();
+    }
+
+    @Benchmark
+    public BenchmarkConfig roundTripChangedTop() {
+        var mutable = config.toMutable();
+        mutable.count(mutable.count() + 1);
+        return mutable.toImmutable();
+    }
+
+    @Benchmark
+    public BenchmarkConfig roundTripChangedNested() {
+        var mutable = config.toMutable();
+        mutable.display().columns(mutable.display().columns() + 1);
+        return mutable.toImmutable();
+    }
+}
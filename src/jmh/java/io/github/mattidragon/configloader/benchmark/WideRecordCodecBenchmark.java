@@ -0,0 +1,113 @@
+package io.github.mattidragon.configloader.benchmark;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.mojang.datafixers.util.Pair;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.JsonOps;
+import com.mojang.serialization.MapCodec;
+import com.mojang.serialization.MapLike;
+import io.github.mattidragon.configloader.api.DefaultedFieldCodec;
+import io.github.mattidragon.configloader.api.DefaultedRecordCodec;
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compares {@link DefaultedRecordCodec} to separate {@link DefaultedFieldCodec}s on records with many fields.
+ * {@code RecordCodecBuilder} only supports up to 16 fields, so the field codecs are combined the same way it does:
+ * one lookup, one result and one {@link DataResult#apply2} per field.
+ * <p>
+ * The {@code linear} input looks keys up by scanning all entries, like ops backed by lists of entries,
+ * which makes the lookup per field quadratic in the number of fields.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WideRecordCodecBenchmark {
+    @Param({"16", "64", "128"})
+    public int fieldCount;
+
+    @Param({"json", "linear"})
+    public String map;
+
+    private List<MapCodec<Integer>> fieldCodecs;
+    private DefaultedRecordCodec<int[]> recordCodec;
+    private MapLike<JsonElement> input;
+
+    @Setup
+    public void setup() {
+        fieldCodecs = new ArrayList<>(fieldCount);
+        var fields = new ArrayList<DefaultedRecordCodec.Field<int[], ?>>(fieldCount);
+        var json = new JsonObject();
+        for (int i = 0; i < fieldCount; i++) {
+            var index = i;
+            var name = "option_" + i;
+            fieldCodecs.add(DefaultedFieldCodec.of(Codec.INT, name, 0));
+            fields.add(DefaultedRecordCodec.field(Codec.INT, name, 0, array -> array[index]));
+            // Leave every fourth field missing, so that defaults are part of the measurement
+            if (i % 4 != 0) json.addProperty(name, i);
+        }
+        recordCodec = DefaultedRecordCodec.of(fields, values -> {
+            var result = new int[fieldCount];
+            for (int i = 0; i < fieldCount; i++) {
+                @SuppressWarnings("unchecked")
+                var field = (DefaultedRecordCodec.Field<int[], Integer>) fields.get(i);
+                result[i] = values.get(field);
+            }
+            return result;
+        });
+        input = map.equals("json") ? JsonOps.INSTANCE.getMap(json).getOrThrow(false, error -> {}) : linear(json);
+    }
+
+    @Benchmark
+    public int[] decodeFields() {
+        var result = DataResult.success(new int[fieldCount]);
+        for (int i = 0; i < fieldCount; i++) {
+            var index = i;
+            result = result.apply2((array, value) -> {
+                array[index] = value;
+                return array;
+            }, fieldCodecs.get(i).decode(JsonOps.INSTANCE, input));
+        }
+        return result.getOrThrow(false, error -> {});
+    }
+
+    @Benchmark
+    public int[] decodeRecord() {
+        return recordCodec.decode(JsonOps.INSTANCE, input).getOrThrow(false, error -> {});
+    }
+
+    private static MapLike<JsonElement> linear(JsonObject json) {
+        var entries = json.entrySet().stream().map(entry -> Pair.<JsonElement, JsonElement>of(JsonOps.INSTANCE.createString(entry.getKey()), entry.getValue())).toList();
+        return new MapLike<>() {
+            @Nullable
+            @Override
+            public JsonElement get(JsonElement key) {
+                return get(key.getAsString());
+            }
+
+            @Nullable
+            @Override
+            public JsonElement get(String key) {
+                for (var entry : entries) {
+                    if (entry.getFirst().getAsString().equals(key)) return entry.getSecond();
+                }
+                return null;
+            }
+
+            @Override
+            public Stream<Pair<JsonElement, JsonElement>> entries() {
+                return entries.stream();
+            }
+        };
+    }
+}
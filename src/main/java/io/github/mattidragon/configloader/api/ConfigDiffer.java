@@ -0,0 +1,52 @@
+package io.github.mattidragon.configloader.api;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Finds which components of a config changed between two values. Used for {@link ConfigManager#subscribe component listeners}.
+ * The annotation processor generates an implementation for records with {@link GenerateMutable},
+ * available from the static {@code differ} method in the mutable class.
+ * @param <D> The config type.
+ */
+@FunctionalInterface
+public interface ConfigDiffer<D> {
+    /**
+     * Compares two config values.
+     * @param previous The old value.
+     * @param current The new value.
+     * @return The paths of all changed components. Components of nested records are joined with dots,
+     * and if a nested component changed the path of the containing component is included too.
+     */
+    @NotNull
+    Set<String> changedComponents(@NotNull D previous, @NotNull D current);
+
+    /**
+     * Checks whether a path names a component that {@link #changedComponents} can report. Used to reject unknown paths in component listeners.
+     * @return {@code true} for all paths by default, as the components of custom differs aren't known.
+     */
+    default boolean isComponent(@NotNull String path) {
+        return true;
+    }
+
+    /**
+     * Creates a differ that knows the paths of its components.
+     * @param differ Finds the changed components.
+     * @param isComponent Checks whether a path names a component, see {@link #isComponent}.
+     */
+    static <D> ConfigDiffer<D> of(ConfigDiffer<D> differ, Predicate<String> isComponent) {
+        return new ConfigDiffer<>() {
+            @Override
+            public @NotNull Set<String> changedComponents(@NotNull D previous, @NotNull D current) {
+                return differ.changedComponents(previous, current);
+            }
+
+            @Override
+            public boolean isComponent(@NotNull String path) {
+                return isComponent.test(path);
+            }
+        };
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.mattidragon.configloader.api;
+
+import com.google.gson.JsonElement;
+import io.github.mattidragon.configloader.impl.BinaryConfigFormat;
+import io.github.mattidragon.configloader.impl.JsonConfigFormat;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The file format of a config. Formats convert between bytes and json trees, which are then decoded using {@link com.mojang.serialization.JsonOps JsonOps}.
+ * Set the format of a config using {@link ConfigManagerBuilder#format} or {@link ConfigManager#create(com.mojang.serialization.Codec, Object, String, ConfigFormat)}.
+ */
+public interface ConfigFormat {
+    /**
+     * Pretty printed json, the default format.
+     */
+    ConfigFormat JSON = JsonConfigFormat.INSTANCE;
+    /**
+     * A compact binary format for very large configs, like generated tables.
+     * Strings are stored only once. Not meant to be edited by hand.
+     */
+    ConfigFormat BINARY = BinaryConfigFormat.INSTANCE;
+
+    /**
+     * @return The file extension of the format, without a dot.
+     */
+    @NotNull
+    String extension();
+
+    /**
+     * Reads data in this format.
+     * @param data The data to read, from its position to its limit. Must not be kept after returning.
+     * @throws IOException If the data is malformed.
+     */
+    @NotNull
+    JsonElement read(@NotNull ByteBuffer data) throws IOException;
+
+    /**
+     * Writes data in this format.
+     * @throws IOException If the data can't be represented in this format.
+     */
+    byte @NotNull [] write(@NotNull JsonElement data) throws IOException;
+
+    /**
+     * Converts a file between formats, for example to migrate an existing config to {@link #BINARY}.
+     * Should be done before the config is loaded.
+     * @param source The file to convert.
+     * @param sourceFormat The format of the source file.
+     * @param target The file to write the converted data to. Replaced if it exists.
+     * @param targetFormat The format to convert to.
+     */
+    static void convert(@NotNull Path source, @NotNull ConfigFormat sourceFormat, @NotNull Path target, @NotNull ConfigFormat targetFormat) throws IOException {
+        // Read fully before writing, so that converting a file in place works
+        var data = sourceFormat.read(ByteBuffer.wrap(Files.readAllBytes(source)));
+        Files.write(target, targetFormat.write(data));
+    }
+}
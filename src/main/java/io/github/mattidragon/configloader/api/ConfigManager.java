@@ -1,14 +1,22 @@
 package io.github.mattidragon.configloader.api;
 
 import com.mojang.serialization.Codec;
+import com.mojang.serialization.Dynamic;
 import io.github.mattidragon.configloader.impl.ConfigManagerImpl;
 import net.fabricmc.fabric.api.event.Event;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.CheckReturnValue;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * This class handles loading and saving of config files as well as storing the current value.
@@ -31,6 +39,43 @@ public interface ConfigManager<D> {
         return new ConfigManagerImpl<>(codec, defaultValue, id);
     }
 
+    /**
+     * Creates a new config manager that stores its file in the given format.
+     * @param codec The codec used for serializing the config. Partial results are not accepted.
+     * @param defaultValue A default value for the config.
+     * @param id An id for the config. Currently only used for file path and in error messages.
+     * @param format The format of the config file, like {@link ConfigFormat#BINARY}.
+     * @return The created config manager.
+     * @param <D> The config type of the manager
+     */
+    @Contract("_, _, _, _ -> new")
+    @NotNull
+    static <D> ConfigManager<D> create(@NotNull Codec<D> codec, @NotNull D defaultValue, @NotNull String id, @NotNull ConfigFormat format) {
+        return builder(codec, defaultValue, id).format(format).build();
+    }
+
+    /**
+     * Creates a builder for a config manager, allowing optional behaviour to be enabled.
+     * @param codec The codec used for serializing the config. Partial results are not accepted.
+     * @param defaultValue A default value for the config.
+     * @param id An id for the config. Currently only used for file path and in error messages.
+     * @return A new builder.
+     * @param <D> The config type of the manager
+     * @see #create(Codec, Object, String)
+     */
+    @Contract("_, _, _ -> new")
+    @NotNull
+    static <D> ConfigManagerBuilder<D> builder(@NotNull Codec<D> codec, @NotNull D defaultValue, @NotNull String id) {
+        return new ConfigManagerBuilder<>(codec, defaultValue, id);
+    }
+
+    /**
+     * Gets the id of this config, as passed on creation.
+     * @return The id.
+     */
+    @NotNull
+    String getId();
+
     /**
      * Gets the current value of the config, loading it if it hasn't already been done.
      * @return The current value.
@@ -38,20 +83,85 @@ public interface ConfigManager<D> {
     @NotNull
     D get();
 
+    /**
+     * Gets a number that changes every time the visible value of the config changes,
+     * whether by {@link #set setting}, {@link #reload reloading} or {@link #override overriding} it.
+     * Every value gets a new number, but closing an override returns to the number of the previous value.
+     * Checking this is cheap, so hot code can use it to tell whether data derived from the config is stale.
+     * @return The version of the current value.
+     */
+    long version();
+
+    /**
+     * Creates a view of data computed from the config. The function is called lazily on the first access after each change,
+     * including overrides and their closing, and the result is reused until the config changes again.
+     * A value from the returned supplier always belongs to the same config value as the one {@link #get()} returns at that time.
+     * <p>
+     * Intended for expensive structures built from the config, like compiled patterns or lookup sets,
+     * replacing manual cache invalidation using the {@link #getReloadEvent() reload event}.
+     * @param function The function computing the derived data. Should not have side effects.
+     * @return A supplier for the derived data. Cheap to call when the config hasn't changed.
+     * @param <R> The type of the derived data.
+     */
+    @NotNull
+    <R> Supplier<R> derive(@NotNull Function<? super D, ? extends R> function);
+
     /**
      * Sets the value of the config. This triggers the config to save to file.
      * @param value The value to set the config to.
      */
     void set(@NotNull D value);
 
+    /**
+     * Gets a future that completes once all saves that were requested before this call have been written to disk.
+     * Only relevant when async saving is enabled, otherwise the returned future is already completed.
+     * Call and wait on this during shutdown to make sure no changes are lost.
+     * @return A future for pending saves. Completes exceptionally if the last save failed.
+     */
+    @NotNull
+    CompletableFuture<Void> flush();
+
     /**
      * Forces the config to reload from file.
+     * If the file hasn't changed since it was last read or written by this manager it isn't parsed again and the reload event isn't invoked.
+     * Parts of the reloaded value that are equal to the previous value reuse the previous instances,
+     * so unchanged nested records can be detected with {@code ==}.
      * @return A runtime exceptions that might have occurred during loading. It's recommended to handle these gracefully and report errors back to the user.
      */
     @SuppressWarnings("UnstableApiUsage")
     @CheckReturnValue
     Optional<RuntimeException> reload();
 
+    /**
+     * Sets the directory of the instance file of a {@link ConfigManagerBuilder#layered() layered} config, like the config folder of a world or server instance.
+     * The instance file is a sparse layer above the normal config file. It is only read, never written, and is reread on {@link #reload()}
+     * and when it is edited, if the config {@link ConfigManagerBuilder#watchFile watches its file}.
+     * @param directory The directory containing the instance file, or {@code null} to remove the instance layer.
+     * @return A runtime exception that might have occurred while loading the instance file. If present, the config is unchanged.
+     * @throws IllegalStateException If the config isn't layered.
+     */
+    @SuppressWarnings("UnstableApiUsage")
+    @CheckReturnValue
+    Optional<RuntimeException> setInstanceDirectory(@Nullable Path directory);
+
+    /**
+     * Sets the overlay of a {@link ConfigManagerBuilder#layered() layered} config, the topmost layer which takes priority over all files.
+     * Useful for values that are controlled by code, like settings enforced by a server. The overlay is never saved.
+     * @param overlay A sparse map of values to override, in any format. {@code null} removes the overlay.
+     * @throws IllegalStateException If the config isn't layered.
+     * @throws IllegalArgumentException If the overlay isn't a map.
+     */
+    void setOverlay(@Nullable Dynamic<?> overlay);
+
+    /**
+     * Gets runtime statistics of this config, like load times and the slowest listener.
+     * Useful to find problems in production without attaching a profiler.
+     * The same data is also recorded as JDK Flight Recorder events in the {@code ConfigToolkit} category.
+     * @return A snapshot of the current statistics.
+     */
+    @NotNull
+    ConfigStats getStats();
+
     /**
      * The method provides an event that you can use to listen for changes to the config. Useful if you need to refresh caches that are based on the config value.
      */
@@ -59,21 +169,72 @@ public interface ConfigManager<D> {
     Event<OnLoadCallback<D>> getReloadEvent();
 
     /**
-     * Temporarily overrides the value of the config.
-     * While overridden the config cannot be set.
+     * Registers a listener that is only invoked when specific components of the config change,
+     * unlike the {@link #getReloadEvent() reload event} which is invoked on every change.
+     * Components of nested records are specified as paths separated by dots, like {@code "rendering.distance"}.
+     * A path of a nested record matches changes to any of its components, and a path inside a nested record
+     * also matches the record changing as a whole, like to or from {@code null}.
+     * The listener is also invoked when the config is loaded for the first time.
+     * <p>
+     * Requires a {@link ConfigManagerBuilder#differ differ} to be set when creating the manager.
+     * @param components The paths of the components to listen to. The listener is invoked if any of them changed.
+     * @param listener The listener.
+     * @throws IllegalStateException If the manager doesn't have a differ.
+     * @throws IllegalArgumentException If the differ doesn't have one of the components, see {@link ConfigDiffer#isComponent}.
+     */
+    void subscribe(@NotNull Collection<String> components, @NotNull OnLoadCallback<D> listener);
+
+    /**
+     * Registers a listener that runs on an executor, like the server thread, the client thread or a worker pool,
+     * instead of on the thread that changed the config. This keeps slow listeners from blocking {@link #set} and {@link #reload}.
+     * The listener never runs concurrently with itself and receives values in the order they became visible.
+     * It is also invoked when the config is loaded for the first time.
+     * <p>
+     * Exceptions thrown by the listener are logged and don't affect other listeners.
+     * @param executor The executor to run the listener on. Use {@code Runnable::run} to run it on the thread that changed the config.
+     * @param policy Whether the listener receives every value or only the latest one once it gets to run.
+     * @param listener The listener.
+     */
+    void listen(@NotNull Executor executor, @NotNull ListenerPolicy policy, @NotNull OnLoadCallback<D> listener);
+
+    /**
+     * Temporarily overrides the value of the config on the current thread. Other threads keep seeing the normal value,
+     * which makes this suitable for things like previews on the render thread while the integrated server is running.
+     * Overrides can be nested, in which case the innermost one is visible.
+     * The config can still be set while overridden, but the new value is only visible on this thread once the override is closed.
      * Does not trigger the reload event.
      * @param config The value to temporarily override the config with.
-     * @return An {@link AutoCloseable} that when closed returns the config to the original value.
-     * Use with try-with-resources highly advised.
+     * @return An {@link AutoCloseable} that when closed returns the config to the previous value.
+     * Must be closed on the same thread, in reverse order of creation. Use with try-with-resources highly advised.
      */
     @NotNull
     OverrideCloser override(@NotNull D config);
 
     @ApiStatus.NonExtendable
     interface OverrideCloser extends AutoCloseable {
+        /**
+         * Closes the override. Does nothing if it's already closed.
+         * @throws IllegalStateException If called on another thread than the one that created the override,
+         * or while an override nested in this one is still open.
+         */
         void close();
     }
 
+    /**
+     * How values are delivered to a listener registered with {@link #listen}.
+     */
+    enum ListenerPolicy {
+        /**
+         * The listener receives every value. If it falls behind, values queue up until it has caught up.
+         */
+        EVERY_CHANGE,
+        /**
+         * The listener only receives the newest value once it runs. Values that were replaced while it was waiting or running are skipped,
+         * so a burst of changes only invokes it once or twice.
+         */
+        LATEST_ONLY
+    }
+
     @FunctionalInterface
     interface OnLoadCallback<D> {
         void onChange(D config);
@@ -0,0 +1,147 @@
+package io.github.mattidragon.configloader.api;
+
+import com.mojang.serialization.Codec;
+import io.github.mattidragon.configloader.impl.ConfigManagerImpl;
+import io.github.mattidragon.configloader.impl.ConfigSettings;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * A builder for config managers with non-default behaviour. Obtain one using {@link ConfigManager#builder}.
+ * @param <D> The config type of the manager
+ */
+public final class ConfigManagerBuilder<D> {
+    private final Codec<D> codec;
+    private final D defaultValue;
+    private final String id;
+    private boolean asyncSave = false;
+    @Nullable
+    private Executor watchExecutor = null;
+    @Nullable
+    private Consumer<RuntimeException> watchErrorHandler = null;
+    @Nullable
+    private ConfigDiffer<D> differ = null;
+    @Nullable
+    private Path directory = null;
+    private boolean layered = false;
+    private ConfigFormat format = ConfigFormat.JSON;
+    private boolean synced = false;
+
+    ConfigManagerBuilder(Codec<D> codec, D defaultValue, String id) {
+        this.codec = codec;
+        this.defaultValue = defaultValue;
+        this.id = id;
+    }
+
+    /**
+     * Makes {@link ConfigManager#set} save the config on a background thread instead of the calling one.
+     * Multiple sets in quick succession are collapsed into a single write of the latest value.
+     * Listeners of the reload event are still invoked synchronously.
+     * Use {@link ConfigManager#flush()} to wait for pending saves.
+     */
+    @Contract("-> this")
+    public ConfigManagerBuilder<D> asyncSave() {
+        this.asyncSave = true;
+        return this;
+    }
+
+    /**
+     * Makes the config reload automatically when its file is edited, for example by a server admin.
+     * The file is parsed and decoded on a background thread and the new value replaces the old one atomically.
+     * Writes done by the config manager itself don't cause reloads. The {@link ConfigManager#setInstanceDirectory instance file} of layered configs is watched as well.
+     * <p>
+     * If the edited file fails to load the current value is kept and the error is logged.
+     * @param listenerExecutor The executor that listeners of the reload event run on for reloads caused by file changes, usually the server or client thread.
+     */
+    @Contract("_ -> this")
+    public ConfigManagerBuilder<D> watchFile(@NotNull Executor listenerExecutor) {
+        this.watchExecutor = listenerExecutor;
+        return this;
+    }
+
+    /**
+     * Like {@link #watchFile(Executor)}, but also reports errors from loading the edited file to a handler.
+     * @param listenerExecutor The executor that listeners and the error handler run on.
+     * @param errorHandler Receives exceptions from loading the edited file. Useful for reporting problems back to admins.
+     */
+    @Contract("_, _ -> this")
+    public ConfigManagerBuilder<D> watchFile(@NotNull Executor listenerExecutor, @NotNull Consumer<RuntimeException> errorHandler) {
+        this.watchExecutor = listenerExecutor;
+        this.watchErrorHandler = errorHandler;
+        return this;
+    }
+
+    /**
+     * Sets the differ used to find changed components, which enables {@link ConfigManager#subscribe component listeners}.
+     * For records with {@link GenerateMutable} a differ is available from the static {@code differ} method of the mutable class.
+     * @param differ The differ for the config type.
+     */
+    @Contract("_ -> this")
+    public ConfigManagerBuilder<D> differ(@NotNull ConfigDiffer<D> differ) {
+        this.differ = differ;
+        return this;
+    }
+
+    /**
+     * Stores the config file in the given directory instead of the game config directory.
+     * Mostly useful for tests and benchmarks that run without a game instance.
+     * @param directory The directory the config file is placed in.
+     */
+    @Contract("_ -> this")
+    public ConfigManagerBuilder<D> directory(@NotNull Path directory) {
+        this.directory = directory;
+        return this;
+    }
+
+    /**
+     * Makes the config file sparse, only storing values that differ from the defaults.
+     * Missing values are filled in from the defaults, so the codec doesn't need to handle missing fields itself.
+     * <p>
+     * Layered configs can also have an {@link ConfigManager#setInstanceDirectory instance file} and an {@link ConfigManager#setOverlay overlay},
+     * which take priority over the normal file. Values come from the highest layer that defines them.
+     * Only the normal file is ever written and values from higher layers are never copied into it.
+     */
+    @Contract("-> this")
+    public ConfigManagerBuilder<D> layered() {
+        this.layered = true;
+        return this;
+    }
+
+    /**
+     * Sets the file format of the config. Defaults to {@link ConfigFormat#JSON}.
+     * The file extension is taken from the format.
+     * @param format The format.
+     */
+    @Contract("_ -> this")
+    public ConfigManagerBuilder<D> format(@NotNull ConfigFormat format) {
+        this.format = format;
+        return this;
+    }
+
+    /**
+     * Makes servers send the config to clients using {@link ConfigSync}, so that clients use the values of the server they are connected to.
+     * Clients apply the received values in a layer above the {@link ConfigManager#setOverlay overlay}, which is never saved.
+     * Synced configs are always {@link #layered() layered}.
+     */
+    @Contract("-> this")
+    public ConfigManagerBuilder<D> synced() {
+        this.synced = true;
+        this.layered = true;
+        return this;
+    }
+
+    /**
+     * Creates the config manager.
+     * @return The created config manager.
+     */
+    @Contract("-> new")
+    @NotNull
+    public ConfigManager<D> build() {
+        return new ConfigManagerImpl<>(codec, defaultValue, id, new ConfigSettings<>(asyncSave, watchExecutor, watchErrorHandler, differ, directory, layered, format, synced));
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.mattidragon.configloader.api;
+
+import io.github.mattidragon.configloader.impl.ConfigRegistryImpl;
+import net.fabricmc.loader.api.FabricLoader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Keeps track of all config managers that have been created and allows loading them all at once.
+ */
+public final class ConfigRegistry {
+    private ConfigRegistry() {
+    }
+
+    /**
+     * Gets all config managers created so far, in creation order.
+     * @return An unmodifiable live view of the managers.
+     */
+    @NotNull
+    @Unmodifiable
+    public static List<ConfigManager<?>> getAll() {
+        return ConfigRegistryImpl.getAll();
+    }
+
+    /**
+     * Loads all registered configs that haven't been loaded yet, using one thread per available processor.
+     * @return A report with load times and errors.
+     * @see #preloadAll(int)
+     */
+    @NotNull
+    public static PreloadReport preloadAll() {
+        return preloadAll(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Loads all registered configs that haven't been loaded yet. Files are read and decoded in parallel,
+     * but values are published and reload listeners invoked on the calling thread.
+     * Intended to be called once at the end of startup, replacing the recommended {@link ConfigManager#get()} call in each initializer.
+     * <p>
+     * Configs that are accessed while preloading is running load themselves exactly like they would without preloading.
+     * Configs that fail to load are left unloaded, so the error is thrown again the first time they are accessed.
+     * @param parallelism The maximum number of threads to load on.
+     * @return A report with load times and errors.
+     */
+    @NotNull
+    public static PreloadReport preloadAll(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least 1");
+        return ConfigRegistryImpl.preloadAll(parallelism);
+    }
+
+    /**
+     * Enables the packed config cache, stored as {@code configtoolkit-cache.bin} in the game config directory.
+     * @see #enablePackedCache(Path)
+     */
+    public static void enablePackedCache() {
+        enablePackedCache(FabricLoader.getInstance().getConfigDir().resolve("configtoolkit-cache.bin"));
+    }
+
+    /**
+     * Enables a cache that packs the contents of all config files into a single file, which is read all at once.
+     * Configs then only check the size and modification time of their files when loading, instead of opening and reading them.
+     * Files that changed since they were cached are read normally, so editing config files works as usual.
+     * The cache file is written in batches, shortly after configs are loaded or saved. Config files themselves are still written on every save.
+     * <p>
+     * Intended for large modpacks, especially on slow or network file systems. Must be called before configs are loaded,
+     * for example in a {@code preLaunch} entrypoint, and can only be enabled once.
+     * @param file The cache file.
+     * @throws IllegalStateException If the cache is already enabled with another file.
+     */
+    public static void enablePackedCache(@NotNull Path file) {
+        ConfigRegistryImpl.enablePackedCache(file);
+    }
+}
@@ -0,0 +1,43 @@
+package io.github.mattidragon.configloader.api;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+
+/**
+ * Runtime statistics of a config manager, as returned by {@link ConfigManager#getStats()}.
+ * The same data is also available as JDK Flight Recorder events in the {@code ConfigToolkit} category.
+ * @param loads How many times the config file was read, including skipped and failed loads.
+ * @param skippedLoads How many loads were skipped because the file hadn't changed.
+ * @param failedLoads How many loads failed.
+ * @param totalLoadTime The total time spent loading.
+ * @param maxLoadTime The longest a single load took.
+ * @param lastFileSize The size in bytes of the file as of the last load or save.
+ * @param saves How many times the config was saved, including skipped and failed saves.
+ * @param skippedSaves How many saves were skipped because the file already had the same contents.
+ * @param failedSaves How many saves failed.
+ * @param totalSaveTime The total time spent encoding and writing.
+ * @param maxSaveTime The longest a single save took.
+ * @param reloads How many times the config was reloaded, either explicitly or by the file watcher.
+ * @param listenerDispatches How many times listeners were invoked for a change.
+ * @param totalListenerTime The total time spent in listeners.
+ * @param maxListenerTime The longest a single listener invocation took.
+ * @param slowestListener The class name of the listener that took {@code maxListenerTime}, if any listener has run.
+ */
+public record ConfigStats(long loads,
+                          long skippedLoads,
+                          long failedLoads,
+                          Duration totalLoadTime,
+                          Duration maxLoadTime,
+                          long lastFileSize,
+                          long saves,
+                          long skippedSaves,
+                          long failedSaves,
+                          Duration totalSaveTime,
+                          Duration maxSaveTime,
+                          long reloads,
+                          long listenerDispatches,
+                          Duration totalListenerTime,
+                          Duration maxListenerTime,
+                          @Nullable String slowestListener) {
+}
@@ -0,0 +1,54 @@
+package io.github.mattidragon.configloader.api;
+
+import io.github.mattidragon.configloader.impl.ConfigSyncImpl;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * Sends {@link ConfigManagerBuilder#synced() synced} configs from servers to clients, so that clients use the values of the server.
+ * The transport is up to the user, usually a custom packet wrapped in a {@link ConfigSyncChannel}.
+ * <p>
+ * When a client joins, the server calls {@link #connect}, which sends all synced configs in a single compressed payload.
+ * Payloads are encoded once per config value and reused for every client that joins.
+ * Afterwards changes to synced configs, like admins reloading them, are sent to all connected clients as deltas containing only the changed values.
+ * Clients apply the received values in a separate layer above the {@link ConfigManager#setOverlay overlay} of each config, so they are never saved.
+ * Values that are {@link ConfigManager#set set} on the client while connected are still saved if they differ from the received ones.
+ */
+public final class ConfigSync {
+    private ConfigSync() {
+    }
+
+    /**
+     * Starts syncing configs to a client. Sends the current values of all synced configs through the channel immediately.
+     * @param channel The channel to the client.
+     */
+    public static void connect(@NotNull ConfigSyncChannel channel) {
+        ConfigSyncImpl.connect(channel);
+    }
+
+    /**
+     * Stops syncing configs to a client, for example when it disconnects.
+     * @param channel A channel previously passed to {@link #connect}.
+     */
+    public static void disconnect(@NotNull ConfigSyncChannel channel) {
+        ConfigSyncImpl.disconnect(channel);
+    }
+
+    /**
+     * Applies a payload received from the server on the client. Configs that fail to decode keep their previous values and the error is logged.
+     * @param payload The payload, as passed to {@link ConfigSyncChannel#send} on the server.
+     * @throws IOException If the payload is malformed or is a delta that doesn't match the received values. Nothing is applied in that case.
+     */
+    public static void receive(byte @NotNull [] payload) throws IOException {
+        ConfigSyncImpl.receive(payload);
+    }
+
+    /**
+     * Removes all values received from the server on the client, returning configs to their local values.
+     * Should be called when disconnecting from a server.
+     */
+    public static void reset() {
+        ConfigSyncImpl.reset();
+    }
+}
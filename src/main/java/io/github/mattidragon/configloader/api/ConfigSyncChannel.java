@@ -0,0 +1,59 @@
+package io.github.mattidragon.configloader.api;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A connection from a server to a client that synced configs are sent through, usually backed by a custom packet.
+ * The client passes every received payload to {@link ConfigSync#receive}, in the order they were sent.
+ */
+@FunctionalInterface
+public interface ConfigSyncChannel {
+    /**
+     * Sends a payload to the client. Called while config sync is locked, so this should only queue the payload and not block.
+     * @param payload The payload. Not modified after sending, so it can be kept.
+     */
+    void send(byte @NotNull [] payload);
+
+    /**
+     * Creates a channel that passes payloads to {@link ConfigSync#receive} in the same game instance.
+     * Payloads are queued until {@link Loopback#deliver()} is called, like a network connection would.
+     * Useful for testing syncing without a network connection.
+     */
+    static Loopback loopback() {
+        return new Loopback();
+    }
+
+    /**
+     * A channel that queues payloads for the same game instance, see {@link #loopback()}.
+     */
+    final class Loopback implements ConfigSyncChannel {
+        private final Queue<byte[]> queue = new ConcurrentLinkedQueue<>();
+
+        private Loopback() {
+        }
+
+        @Override
+        public void send(byte @NotNull [] payload) {
+            queue.add(payload);
+        }
+
+        /**
+         * Passes all queued payloads to {@link ConfigSync#receive} in the order they were sent.
+         * Like handling a packet, this must not be called from inside config sync, for example from a config listener.
+         * @return The number of delivered payloads.
+         * @throws IOException If a payload is rejected. It is dropped and the payloads after it stay queued.
+         */
+        public synchronized int deliver() throws IOException {
+            var count = 0;
+            for (var payload = queue.poll(); payload != null; payload = queue.poll()) {
+                count++;
+                ConfigSync.receive(payload);
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package io.github.mattidragon.configloader.api;
+
+import com.mojang.datafixers.util.Pair;
+import com.mojang.serialization.*;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * A codec for records made entirely of fields with default values, similar to a {@link com.mojang.serialization.codecs.RecordCodecBuilder RecordCodecBuilder}
+ * codec made of {@link DefaultedFieldCodec}s. Instead of looking up every field separately it iterates the input once,
+ * which is considerably faster for wide records, especially with ops that look up map keys linearly.
+ * <p>
+ * Decoded values, errors and encoded output are the same as with {@link DefaultedFieldCodec}s. Unknown keys are ignored.
+ * <pre>{@code
+ * var ENABLED = DefaultedRecordCodec.field(Codec.BOOL, "enabled", true, MyConfig::enabled);
+ * var LIMIT = DefaultedRecordCodec.field(Codec.INT, "limit", 10, MyConfig::limit);
+ * var CODEC = DefaultedRecordCodec.of(List.of(ENABLED, LIMIT), values -> new MyConfig(values.get(ENABLED), values.get(LIMIT))).codec();
+ * }</pre>
+ * @param <R> The type that this codec serializes.
+ */
+public final class DefaultedRecordCodec<R> extends MapCodec<R> {
+    private final List<Field<R, ?>> fields;
+    private final Map<String, Integer> slotsByName;
+    private final Map<Field<R, ?>, Integer> slotsByField;
+    private final Function<Values<R>, R> constructor;
+
+    private DefaultedRecordCodec(List<Field<R, ?>> fields, Function<Values<R>, R> constructor) {
+        this.fields = List.copyOf(fields);
+        this.constructor = constructor;
+        this.slotsByName = new HashMap<>();
+        this.slotsByField = new IdentityHashMap<>();
+        for (int i = 0; i < this.fields.size(); i++) {
+            var field = this.fields.get(i);
+            if (slotsByName.put(field.name, i) != null) throw new IllegalArgumentException("Duplicate field name: " + field.name);
+            slotsByField.put(field, i);
+        }
+    }
+
+    /**
+     * Creates a codec from fields and a constructor.
+     * @param fields The fields of the record, in the order they are encoded.
+     * @param constructor Creates the record from the decoded values. Values are accessed using the field objects.
+     */
+    public static <R> DefaultedRecordCodec<R> of(List<Field<R, ?>> fields, Function<Values<R>, R> constructor) {
+        return new DefaultedRecordCodec<>(fields, constructor);
+    }
+
+    /**
+     * Creates a field with a default value. Works like {@link DefaultedFieldCodec#of(Codec, String, Supplier)}.
+     * @param getter Gets the value of the field from the record, for encoding.
+     */
+    public static <R, A> Field<R, A> field(Codec<A> codec, String name, Supplier<A> defaultSupplier, Function<R, A> getter) {
+        return new Field<>(codec, name, defaultSupplier, getter);
+    }
+
+    /**
+     * Creates a field with a default value. Works like {@link DefaultedFieldCodec#of(Codec, String, Object)}.
+     * @param getter Gets the value of the field from the record, for encoding.
+     */
+    public static <R, A> Field<R, A> field(Codec<A> codec, String name, A defaultValue, Function<R, A> getter) {
+        return new Field<>(codec, name, () -> defaultValue, getter);
+    }
+
+    @Override
+    public <T> Stream<T> keys(DynamicOps<T> ops) {
+        return fields.stream().map(field -> ops.createString(field.name));
+    }
+
+    @Override
+    public <T> DataResult<R> decode(DynamicOps<T> ops, MapLike<T> input) {
+        var results = new DataResult<?>[fields.size()];
+        for (var entry : (Iterable<Pair<T, T>>) input.entries()::iterator) {
+            var name = ops.getStringValue(entry.getFirst()).result();
+            if (name.isEmpty()) continue;
+            var slot = slotsByName.get(name.get());
+            if (slot == null) continue;
+            var value = entry.getSecond();
+            if (value == null || value.equals(ops.empty())) {
+                // DefaultedFieldCodec reads through MapLike.get, which treats null values as missing with ops like JsonOps
+                value = input.get(name.get());
+                if (value == null) continue;
+            }
+            results[slot] = fields.get(slot).codec.parse(ops, value);
+        }
+
+        // Errors are collected in field order, so that messages match a RecordCodecBuilder
+        var values = new Object[fields.size()];
+        StringJoiner errors = null;
+        var hasAllValues = true;
+        for (int i = 0; i < values.length; i++) {
+            var result = results[i];
+            if (result == null) {
+                values[i] = fields.get(i).defaultSupplier.get();
+                continue;
+            }
+            var success = result.result();
+            if (success.isPresent()) {
+                values[i] = success.get();
+                continue;
+            }
+            var error = result.error().orElseThrow();
+            if (errors == null) errors = new StringJoiner("; ");
+            errors.add(error.message());
+            var partial = error.partialResult();
+            if (partial.isPresent()) values[i] = partial.get();
+            else hasAllValues = false;
+        }
+
+        if (errors == null) return DataResult.success(constructor.apply(new Values<>(this, values)));
+        var message = errors.toString();
+        return hasAllValues
+                ? DataResult.error(() -> message, constructor.apply(new Values<>(this, values)))
+                : DataResult.error(() -> message);
+    }
+
+    @Override
+    public <T> RecordBuilder<T> encode(R input, DynamicOps<T> ops, RecordBuilder<T> prefix) {
+        for (var field : fields) {
+            field.encode(input, ops, prefix);
+        }
+        return prefix;
+    }
+
+    @Override
+    public String toString() {
+        return "DefaultedRecordCodec" + fields;
+    }
+
+    /**
+     * A field of a {@link DefaultedRecordCodec}. Also used as the key for accessing the decoded value of the field in {@link Values}.
+     * @param <R> The record type.
+     * @param <A> The type of the field.
+     */
+    public static final class Field<R, A> {
+        private final Codec<A> codec;
+        private final String name;
+        private final Supplier<A> defaultSupplier;
+        private final Function<R, A> getter;
+
+        private Field(Codec<A> codec, String name, Supplier<A> defaultSupplier, Function<R, A> getter) {
+            this.codec = codec;
+            this.name = name;
+            this.defaultSupplier = defaultSupplier;
+            this.getter = getter;
+        }
+
+        private <T> void encode(R input, DynamicOps<T> ops, RecordBuilder<T> builder) {
+            builder.add(name, codec.encodeStart(ops, getter.apply(input)));
+        }
+
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return name + "[" + codec + "]";
+        }
+    }
+
+    /**
+     * The decoded values of a record, passed to the constructor of a {@link DefaultedRecordCodec}.
+     * @param <R> The record type.
+     */
+    public static final class Values<R> {
+        private final DefaultedRecordCodec<R> codec;
+        private final Object[] values;
+
+        private Values(DefaultedRecordCodec<R> codec, Object[] values) {
+            this.codec = codec;
+            this.values = values;
+        }
+
+        /**
+         * Gets the decoded value of a field.
+         * @throws IllegalArgumentException If the field isn't part of the codec.
+         */
+        @SuppressWarnings("unchecked")
+        public <A> A get(Field<R, A> field) {
+            var slot = codec.slotsByField.get(field);
+            if (slot == null) throw new IllegalArgumentException("Field %s isn't part of %s".formatted(field.name, codec));
+            return (A) values[slot];
+        }
+    }
+}
@@ -13,6 +13,13 @@ import java.lang.annotation.Target;
  * Can only be applied to records, other classes will cause the annotation processor to emit an error.
  * Records that this annotation is used on must also implement the {@code Source} interface found in the mutable version of the class.
  * This interface allows the annotation processor to indirectly inject methods into the target record.
+ * <p>
+ * The mutable class remembers the record it was created from. If nothing was modified {@code toImmutable} returns that record
+ * instead of creating a new one, and unmodified nested records are reused as well. Records created by {@code toImmutable} replace the remembered record,
+ * so calling it repeatedly only creates a new record after further modifications.
+ * Modifications are tracked by the setters, or by comparing fields to the original record if {@link #encapsulateFields()} is disabled.
+ * <p>
+ * Components annotated with {@link Indexed} get lookup structures in an {@code Index} class nested in the mutable class.
  */
 @Retention(RetentionPolicy.CLASS)
 @Target(ElementType.TYPE)
@@ -25,4 +32,15 @@ public @interface GenerateMutable {
     boolean encapsulateFields() default true;
 
     boolean useFancyMethodNames() default false;
+
+    /**
+     * If {@code true} a {@link JsonStreamCodec} for the record is generated as well, named {@code StreamCodec} and nested in the mutable class.
+     * It reads and writes json directly from a stream, which is considerably faster than going through a {@link com.mojang.serialization.Codec Codec} with {@link com.mojang.serialization.JsonOps JsonOps}.
+     * <p>
+     * The generated codec behaves like a record codec where every component is a {@link DefaultedFieldCodec}, with field names matching the component names.
+     * Defaults are taken from the record passed to its constructor.
+     * Supported component types are primitives, their boxed versions, {@code String}, {@code List}s and {@code Map}s with string keys of supported types,
+     * and records that generate a codec themselves, though those are only supported directly as components and not inside collections.
+     */
+    boolean generateCodec() default false;
 }
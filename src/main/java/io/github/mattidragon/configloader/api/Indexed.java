@@ -0,0 +1,40 @@
+package io.github.mattidragon.configloader.api;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a collection component of a {@link GenerateMutable} record for indexing. For records with indexed components
+ * the annotation processor generates an {@code Index} class nested in the mutable class, which is built from a record
+ * and contains lookup structures with accessors for each indexed component.
+ * <p>
+ * Building an index copies the collections, so it should be cached per config value.
+ * Use {@code configManager.derive(MutableMyConfig.Index::new)}, which rebuilds the index only when the config changes.
+ * <p>
+ * Depending on the component type and {@link #value() kind} these lookups are generated:
+ * <ul>
+ *     <li>Collections of {@code Integer} or {@code Long}: a primitive hash set with {@code <name>Contains(int)} or {@code <name>Contains(long)}.</li>
+ *     <li>Other collections: a hash set with {@code <name>Contains(value)}.</li>
+ *     <li>Maps with {@code Integer} or {@code Long} keys: a primitive keyed map with {@code <name>Get(int)} or {@code <name>Get(long)}.</li>
+ *     <li>Collections of strings with {@link Kind#PREFIX}: a {@link PrefixMatcher} with {@code <name>Matches(value)}.</li>
+ * </ul>
+ * All lookups are constant time, or linear in the length of the input for prefixes, and don't allocate.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.RECORD_COMPONENT)
+public @interface Indexed {
+    Kind value() default Kind.SET;
+
+    enum Kind {
+        /**
+         * Index for membership checks or lookups by numeric key.
+         */
+        SET,
+        /**
+         * Index for checking whether any element is a prefix of a string. Only supported for collections of strings.
+         */
+        PREFIX
+    }
+}
@@ -0,0 +1,311 @@
+package io.github.mattidragon.configloader.api;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.ToNumberPolicy;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.mojang.datafixers.util.Pair;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.DynamicOps;
+import com.mojang.serialization.JsonOps;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A codec that reads and writes json directly from a stream, without building a {@link JsonElement} tree or going through {@link DynamicOps}.
+ * Config managers detect codecs of this type and use the streaming methods when loading and saving,
+ * while all other users see a normal {@link Codec}.
+ * <p>
+ * Usually generated by the annotation processor using {@link GenerateMutable#generateCodec()},
+ * in which case it behaves like a {@link com.mojang.serialization.codecs.RecordCodecBuilder RecordCodecBuilder} codec made of {@link DefaultedFieldCodec}s
+ * and decodes the same values as that codec would with {@link JsonOps}.
+ * The static helper methods are used by the generated code and are not meant to be called directly.
+ * @param <A> The type that this codec serializes.
+ */
+public abstract class JsonStreamCodec<A> implements Codec<A> {
+    private final TypeAdapter<A> adapter = new TypeAdapter<>() {
+        @Override
+        public void write(JsonWriter out, A value) throws IOException {
+            JsonStreamCodec.this.write(out, value);
+        }
+
+        @Override
+        public A read(JsonReader in) throws IOException {
+            return JsonStreamCodec.this.read(in);
+        }
+    };
+
+    /**
+     * Reads a value from a json stream.
+     * @throws JsonParseException If the json is valid, but doesn't match the format of this codec.
+     * @throws IOException If the json is malformed or reading fails.
+     */
+    public abstract A read(JsonReader in) throws IOException;
+
+    /**
+     * Writes a value to a json stream.
+     */
+    public abstract void write(JsonWriter out, A value) throws IOException;
+
+    /**
+     * Writes a value as json text, formatted the same way as the pretty printed json of config files.
+     */
+    public void writePretty(Writer out, A value) throws IOException {
+        var writer = new JsonWriter(out);
+        writer.setIndent("  ");
+        writer.setHtmlSafe(false);
+        writer.setLenient(true);
+        write(writer, value);
+        writer.flush();
+    }
+
+    /**
+     * Like {@link #writePretty(Writer, Object)}, but returns the json as a string.
+     */
+    public String toPrettyString(A value) {
+        var out = new StringWriter();
+        try {
+            writePretty(out, value);
+        } catch (IOException e) {
+            throw new AssertionError("StringWriter doesn't throw", e);
+        }
+        return out.toString();
+    }
+
+    @Override
+    public <T> DataResult<Pair<A, T>> decode(DynamicOps<T> ops, T input) {
+        var json = ops instanceof JsonOps ? (JsonElement) input : ops.convertTo(JsonOps.INSTANCE, input);
+        try {
+            return DataResult.success(Pair.of(adapter.fromJsonTree(json), ops.empty()));
+        } catch (JsonParseException e) {
+            return DataResult.error(e::getMessage);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> DataResult<T> encode(A input, DynamicOps<T> ops, T prefix) {
+        JsonElement json;
+        try {
+            json = adapter.toJsonTree(input);
+        } catch (JsonParseException e) {
+            return DataResult.error(e::getMessage);
+        }
+        var encoded = ops instanceof JsonOps ? (T) json : JsonOps.INSTANCE.convertTo(ops, json);
+        if (prefix.equals(ops.empty())) return DataResult.success(encoded);
+
+        // Merge into the prefix, like map codecs do
+        return ops.getMapValues(encoded).flatMap(entries -> {
+            var result = DataResult.success(prefix);
+            for (var entry : (Iterable<Pair<T, T>>) entries::iterator) {
+                result = result.flatMap(map -> ops.mergeToMap(map, entry.getFirst(), entry.getSecond()));
+            }
+            return result;
+        });
+    }
+
+    @ApiStatus.Internal
+    @FunctionalInterface
+    public interface ValueReader<T> {
+        T read(JsonReader in) throws IOException;
+    }
+
+    @ApiStatus.Internal
+    @FunctionalInterface
+    public interface ValueWriter<T> {
+        void write(JsonWriter out, T value) throws IOException;
+    }
+
+    /**
+     * Reads the value of an object field, prefixing errors with the field name.
+     */
+    @ApiStatus.Internal
+    public static <T> T readField(JsonReader in, String name, ValueReader<T> reader) throws IOException {
+        try {
+            return reader.read(in);
+        } catch (JsonParseException e) {
+            throw new JsonParseException("%s: %s".formatted(name, e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Reads the value of a record field like {@link #readField(JsonReader, String, ValueReader)}.
+     * Null is read as the default value, as {@link DefaultedFieldCodec} treats it like a missing field.
+     */
+    @ApiStatus.Internal
+    public static <T> T readField(JsonReader in, String name, T defaultValue, ValueReader<T> reader) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return defaultValue;
+        }
+        return readField(in, name, reader);
+    }
+
+    @ApiStatus.Internal
+    public static void beginObject(JsonReader in) throws IOException {
+        expect(in, JsonToken.BEGIN_OBJECT, "Not a json object");
+        in.beginObject();
+    }
+
+    @ApiStatus.Internal
+    public static String readString(JsonReader in) throws IOException {
+        // JsonOps reads numbers as strings as well, using their original text
+        if (in.peek() != JsonToken.NUMBER) expect(in, JsonToken.STRING, "Not a string");
+        return in.nextString();
+    }
+
+    @ApiStatus.Internal
+    public static boolean readBoolean(JsonReader in) throws IOException {
+        return switch (in.peek()) {
+            case BOOLEAN -> in.nextBoolean();
+            case NUMBER -> readNumber(in).byteValue() != 0;
+            default -> throw error(in, "Not a boolean");
+        };
+    }
+
+    @ApiStatus.Internal
+    public static byte readByte(JsonReader in) throws IOException {
+        return readNumber(in).byteValue();
+    }
+
+    @ApiStatus.Internal
+    public static short readShort(JsonReader in) throws IOException {
+        return readNumber(in).shortValue();
+    }
+
+    @ApiStatus.Internal
+    public static int readInt(JsonReader in) throws IOException {
+        return readNumber(in).intValue();
+    }
+
+    @ApiStatus.Internal
+    public static long readLong(JsonReader in) throws IOException {
+        return readNumber(in).longValue();
+    }
+
+    @ApiStatus.Internal
+    public static float readFloat(JsonReader in) throws IOException {
+        return readNumber(in).floatValue();
+    }
+
+    @ApiStatus.Internal
+    public static double readDouble(JsonReader in) throws IOException {
+        return readNumber(in).doubleValue();
+    }
+
+    /**
+     * Reads a number, accepting the same inputs as {@link JsonOps}: any json number, or a boolean as 0 or 1.
+     * Numbers are lazily parsed like in gson's json trees, so that conversions to each type round the same way.
+     */
+    private static Number readNumber(JsonReader in) throws IOException {
+        return switch (in.peek()) {
+            case NUMBER -> ToNumberPolicy.LAZILY_PARSED_NUMBER.readNumber(in);
+            case BOOLEAN -> in.nextBoolean() ? 1 : 0;
+            default -> throw error(in, "Not a number");
+        };
+    }
+
+    @ApiStatus.Internal
+    public static <T> List<T> readList(JsonReader in, ValueReader<T> elementReader) throws IOException {
+        expect(in, JsonToken.BEGIN_ARRAY, "Not a json array");
+        var builder = ImmutableList.<T>builder();
+        in.beginArray();
+        while (in.hasNext()) {
+            builder.add(elementReader.read(in));
+        }
+        in.endArray();
+        return builder.build();
+    }
+
+    @ApiStatus.Internal
+    public static <T> Map<String, T> readMap(JsonReader in, ValueReader<T> valueReader) throws IOException {
+        beginObject(in);
+        var builder = ImmutableMap.<String, T>builder();
+        while (in.hasNext()) {
+            var key = in.nextName();
+            builder.put(key, readField(in, key, valueReader));
+        }
+        in.endObject();
+        // Json trees keep the last value of duplicate keys
+        return builder.buildKeepingLast();
+    }
+
+    @ApiStatus.Internal
+    public static void writeString(JsonWriter out, String value) throws IOException {
+        out.value(value);
+    }
+
+    @ApiStatus.Internal
+    public static void writeBoolean(JsonWriter out, boolean value) throws IOException {
+        out.value(value);
+    }
+
+    // Numbers are written through the Number overload, which uses toString like gson does for JsonPrimitives
+    @ApiStatus.Internal
+    public static void writeByte(JsonWriter out, byte value) throws IOException {
+        out.value(Byte.valueOf(value));
+    }
+
+    @ApiStatus.Internal
+    public static void writeShort(JsonWriter out, short value) throws IOException {
+        out.value(Short.valueOf(value));
+    }
+
+    @ApiStatus.Internal
+    public static void writeInt(JsonWriter out, int value) throws IOException {
+        out.value(Integer.valueOf(value));
+    }
+
+    @ApiStatus.Internal
+    public static void writeLong(JsonWriter out, long value) throws IOException {
+        out.value(Long.valueOf(value));
+    }
+
+    @ApiStatus.Internal
+    public static void writeFloat(JsonWriter out, float value) throws IOException {
+        out.value(Float.valueOf(value));
+    }
+
+    @ApiStatus.Internal
+    public static void writeDouble(JsonWriter out, double value) throws IOException {
+        out.value(Double.valueOf(value));
+    }
+
+    @ApiStatus.Internal
+    public static <T> void writeList(JsonWriter out, List<T> value, ValueWriter<? super T> elementWriter) throws IOException {
+        out.beginArray();
+        for (var element : value) {
+            elementWriter.write(out, element);
+        }
+        out.endArray();
+    }
+
+    @ApiStatus.Internal
+    public static <T> void writeMap(JsonWriter out, Map<String, T> value, ValueWriter<? super T> valueWriter) throws IOException {
+        out.beginObject();
+        for (var entry : value.entrySet()) {
+            out.name(entry.getKey());
+            valueWriter.write(out, entry.getValue());
+        }
+        out.endObject();
+    }
+
+    private static void expect(JsonReader in, JsonToken token, String message) throws IOException {
+        if (in.peek() != token) throw error(in, message);
+    }
+
+    private static JsonParseException error(JsonReader in, String message) throws IOException {
+        return new JsonParseException("%s, found %s".formatted(message, in.peek().name().toLowerCase()));
+    }
+}
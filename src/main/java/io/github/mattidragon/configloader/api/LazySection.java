@@ -0,0 +1,170 @@
+package io.github.mattidragon.configloader.api;
+
+import com.mojang.datafixers.util.Pair;
+import com.mojang.serialization.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * A part of a config that is only decoded when it's first accessed. Useful for large sections that are rarely used,
+ * like big block lists, which would otherwise slow down loading and take up memory as decoded objects.
+ * <p>
+ * Create the codec for a section using {@link #codec(Codec)} and use {@code LazySection<T>} as the type of the field or record component.
+ * When loading, the section keeps the undecoded data, which is decoded on the first call to {@link #get()} and then reused.
+ * The undecoded data is dropped once decoding succeeds, so only one of them is kept in memory.
+ * Reloading the config creates new sections, so changes are picked up. Sections that were never accessed are saved without being decoded.
+ * <p>
+ * As decoding is delayed, errors in lazy sections don't prevent the config from loading.
+ * Use {@link #result()} to check a section for errors, for example right after loading to report them to users.
+ * <p>
+ * Only decoding is delayed. The config file is still parsed as a whole, and undecoded sections keep their part of the parsed tree,
+ * so sections only save memory when the decoded objects are larger than the json they were read from.
+ * Sections also need a normal codec: {@link JsonStreamCodec}s read the file directly, so none is generated for records containing sections.
+ * @param <T> The type of the section.
+ */
+public final class LazySection<T> implements Supplier<T> {
+    private final Codec<T> codec;
+    /**
+     * The undecoded data, or {@code null} if the section was created from a value or has been decoded successfully.
+     * Kept if decoding fails, so that saving doesn't lose it.
+     */
+    @Nullable
+    private volatile Dynamic<?> data;
+    @Nullable
+    private volatile DataResult<T> result;
+
+    private LazySection(Codec<T> codec, @Nullable Dynamic<?> data, @Nullable DataResult<T> result) {
+        this.codec = codec;
+        this.data = data;
+        this.result = result;
+    }
+
+    /**
+     * Creates a codec for lazy sections. Decoding with it only stores the input, the actual decoding is done by the section.
+     * @param codec The codec of the section contents.
+     */
+    public static <T> Codec<LazySection<T>> codec(@NotNull Codec<T> codec) {
+        return new Codec<>() {
+            @Override
+            public <O> DataResult<Pair<LazySection<T>, O>> decode(DynamicOps<O> ops, O input) {
+                return DataResult.success(Pair.of(new LazySection<>(codec, new Dynamic<>(ops, input), null), ops.empty()));
+            }
+
+            @Override
+            public <O> DataResult<O> encode(LazySection<T> input, DynamicOps<O> ops, O prefix) {
+                return input.encode(ops, prefix);
+            }
+
+            @Override
+            public String toString() {
+                return "LazySection[" + codec + "]";
+            }
+        };
+    }
+
+    /**
+     * Creates an already decoded section, for example for default values.
+     * @param codec The codec of the section contents, used for saving.
+     * @param value The contents of the section.
+     */
+    public static <T> LazySection<T> of(@NotNull Codec<T> codec, @NotNull T value) {
+        return new LazySection<>(codec, null, DataResult.success(value));
+    }
+
+    /**
+     * Gets the contents of the section, decoding them if it hasn't been done yet.
+     * @throws RuntimeException If decoding failed. Use {@link #result()} to handle errors.
+     */
+    @Override
+    public T get() {
+        return result().getOrThrow(false, error -> {});
+    }
+
+    /**
+     * Decodes the section if it hasn't been done yet and returns the result, which contains any errors.
+     * Partial results are not accepted, like for the rest of the config.
+     */
+    @NotNull
+    public DataResult<T> result() {
+        var current = result;
+        if (current != null) return current;
+
+        synchronized (this) {
+            current = result;
+            if (current == null) {
+                current = decode(Objects.requireNonNull(data));
+                result = current;
+                // Set after the result, so that encoding always sees one of them
+                if (current.result().isPresent()) data = null;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * @return Whether the section has been decoded.
+     */
+    public boolean isDecoded() {
+        return result != null;
+    }
+
+    /**
+     * Checks whether both sections are undecoded and were loaded from equal data, without decoding either of them.
+     * Unlike {@link #equals}, this never decodes, which is used to keep unchanged sections across reloads.
+     * @param other The other section.
+     */
+    public boolean isSameUndecoded(@NotNull LazySection<?> other) {
+        // Read the data first, as it is dropped after the result is set
+        var data = this.data;
+        var otherData = other.data;
+        return result == null && other.result == null && codec.equals(other.codec) && sameData(data, otherData);
+    }
+
+    private static boolean sameData(@Nullable Dynamic<?> data, @Nullable Dynamic<?> otherData) {
+        return data != null && otherData != null && data.getOps() == otherData.getOps() && data.getValue().equals(otherData.getValue());
+    }
+
+    private <O> DataResult<T> decode(Dynamic<O> data) {
+        return codec.parse(data.getOps(), data.getValue());
+    }
+
+    private <O> DataResult<O> encode(DynamicOps<O> ops, O prefix) {
+        // Keep the original data if we have it, there's no need to decode and encode it again
+        var data = this.data;
+        if (data != null) return ops.mergeToPrimitive(prefix, data.convert(ops).getValue());
+        return codec.encode(get(), ops, prefix);
+    }
+
+    /**
+     * Sections are equal if they have the same codec and contents. Sections that are both undecoded are compared
+     * by their data without decoding them, otherwise both are decoded.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LazySection<?> that)) return false;
+        if (!codec.equals(that.codec)) return false;
+        // Compare the data if possible to avoid decoding
+        var data = this.data;
+        var thatData = that.data;
+        if (data != null && thatData != null && data.getOps() == thatData.getOps()) return data.getValue().equals(thatData.getValue());
+        return Objects.equals(result().result(), that.result().result());
+    }
+
+    /**
+     * Only depends on the codec, as hashing the contents would require decoding them.
+     * Hashing the undecoded data instead would give equal sections different hashes when only one of them is decoded.
+     */
+    @Override
+    public int hashCode() {
+        return codec.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return isDecoded() ? "LazySection[" + result + "]" : "LazySection[undecoded]";
+    }
+}
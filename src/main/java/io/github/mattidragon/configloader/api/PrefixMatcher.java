@@ -0,0 +1,93 @@
+package io.github.mattidragon.configloader.api;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Checks whether strings start with any of a set of prefixes, for example to match ids against namespaces or path prefixes.
+ * Matching walks a prefix tree, so it only depends on the length of the checked string and doesn't allocate.
+ * Immutable and thread safe.
+ */
+public final class PrefixMatcher {
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final Node root;
+    private final int size;
+
+    private PrefixMatcher(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Creates a matcher for some prefixes.
+     * @param prefixes The prefixes to match. An empty prefix matches everything.
+     */
+    public static PrefixMatcher of(@NotNull Collection<String> prefixes) {
+        var root = new BuilderNode();
+        for (var prefix : prefixes) {
+            var node = root;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.children.computeIfAbsent(prefix.charAt(i), c -> new BuilderNode());
+            }
+            node.terminal = true;
+        }
+        return new PrefixMatcher(root.build(), prefixes.size());
+    }
+
+    /**
+     * Checks whether a string starts with any of the prefixes of this matcher.
+     */
+    public boolean matches(@NotNull CharSequence value) {
+        var node = root;
+        if (node.terminal) return true;
+        for (int i = 0; i < value.length(); i++) {
+            var index = Arrays.binarySearch(node.keys, value.charAt(i));
+            if (index < 0) return false;
+            node = node.children[index];
+            if (node.terminal) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return Whether the matcher has no prefixes and never matches anything.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "PrefixMatcher[" + size + " prefixes]";
+    }
+
+    private record Node(char[] keys, Node[] children, boolean terminal) {
+    }
+
+    private static final class BuilderNode {
+        private final Map<Character, BuilderNode> children = new TreeMap<>();
+        private boolean terminal = false;
+
+        private Node build() {
+            if (children.isEmpty() || terminal) {
+                // Nothing below a terminal node can change the result
+                return new Node(NO_KEYS, NO_CHILDREN, terminal);
+            }
+            var keys = new char[children.size()];
+            var nodes = new Node[children.size()];
+            var i = 0;
+            for (var entry : children.entrySet()) {
+                keys[i] = entry.getKey();
+                nodes[i] = entry.getValue().build();
+                i++;
+            }
+            return new Node(keys, nodes, false);
+        }
+    }
+}
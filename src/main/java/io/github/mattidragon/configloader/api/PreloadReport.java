@@ -0,0 +1,27 @@
+package io.github.mattidragon.configloader.api;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The results of {@link ConfigRegistry#preloadAll()}.
+ * @param entries One entry per config that was registered when preloading started.
+ * @param totalTime The wall clock time preloading took.
+ */
+public record PreloadReport(List<Entry> entries, Duration totalTime) {
+    /**
+     * @return The entries of configs that failed to load.
+     */
+    public List<Entry> failures() {
+        return entries.stream().filter(entry -> entry.error().isPresent()).toList();
+    }
+
+    /**
+     * @param id The id of the config.
+     * @param loadTime The time spent loading the config. Zero for configs that were already loaded.
+     * @param error The exception that occurred while loading, if any.
+     */
+    public record Entry(String id, Duration loadTime, Optional<RuntimeException> error) {
+    }
+}
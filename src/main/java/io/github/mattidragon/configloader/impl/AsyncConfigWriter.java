@@ -0,0 +1,65 @@
+package io.github.mattidragon.configloader.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns the background thread used by configs with async saving enabled and by the {@link PackedConfigCache}.
+ * All configs share one thread, which keeps writes ordered and avoids hammering the disk with parallel writes.
+ * <p>
+ * At shutdown queued saves are finished first and the packed cache is written afterwards, so that it includes them.
+ */
+final class AsyncConfigWriter {
+    private static final Logger LOGGER = LoggerFactory.getLogger("ConfigLoader/AsyncConfigWriter");
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "ConfigToolkit Save Thread");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        // Saves that are still queued when the game exits have to finish, otherwise the last changes are lost
+        Runtime.getRuntime().addShutdownHook(new Thread(AsyncConfigWriter::shutdown, "ConfigToolkit Save Shutdown"));
+    }
+
+    private AsyncConfigWriter() {
+    }
+
+    /**
+     * Makes sure the shutdown hook is registered, which happens when this class is loaded.
+     */
+    static void ensureShutdownHook() {
+    }
+
+    static CompletableFuture<Void> submit(Runnable task) {
+        return CompletableFuture.runAsync(task, EXECUTOR);
+    }
+
+    /**
+     * Runs a task after a delay. Tasks that haven't started when the game exits are dropped.
+     */
+    static CompletableFuture<Void> submitDelayed(Runnable task, long delay, TimeUnit unit) {
+        return CompletableFuture.runAsync(task, CompletableFuture.delayedExecutor(delay, unit, EXECUTOR));
+    }
+
+    private static void shutdown() {
+        EXECUTOR.shutdown();
+        try {
+            if (!EXECUTOR.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.error("Timed out while waiting for configs to save");
+            }
+        } catch (InterruptedException e) {
+            LOGGER.error("Interrupted while waiting for configs to save", e);
+            Thread.currentThread().interrupt();
+        }
+        // Runs on this thread, as delayed flushes are rejected once the executor is shut down
+        var cache = PackedConfigCache.get();
+        if (cache != null) cache.flushOnShutdown();
+    }
+}
@@ -0,0 +1,331 @@
+package io.github.mattidragon.configloader.impl;
+
+import com.google.gson.*;
+import com.google.gson.internal.LazilyParsedNumber;
+import io.github.mattidragon.configloader.api.ConfigFormat;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary encoding of json trees.
+ * <p>
+ * The data starts with the magic {@code CTKB} and a version byte, followed by a table of all strings used as keys or values.
+ * After that comes the root value, which is a tag byte followed by the contents of the value.
+ * Counts, lengths and string indices are unsigned varints, integers are zigzag encoded varints.
+ */
+public final class BinaryConfigFormat implements ConfigFormat {
+    public static final BinaryConfigFormat INSTANCE = new BinaryConfigFormat();
+
+    private static final int MAGIC = 0x43544B42; // CTKB
+    private static final byte VERSION = 1;
+
+    private static final byte NULL = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+    private static final byte INTEGER = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte STRING = 5;
+    private static final byte ARRAY = 6;
+    private static final byte OBJECT = 7;
+    /**
+     * A number that isn't an integer or double, stored as its decimal text in the string table.
+     */
+    private static final byte DECIMAL = 8;
+    /**
+     * The deepest nesting of arrays and objects that is read, to avoid overflowing the stack on malicious data.
+     */
+    private static final int MAX_DEPTH = 512;
+
+    private BinaryConfigFormat() {
+    }
+
+    @Override
+    public @NotNull String extension() {
+        return "bin";
+    }
+
+    @Override
+    public @NotNull JsonElement read(@NotNull ByteBuffer input) throws IOException {
+        var data = input.slice().order(ByteOrder.BIG_ENDIAN);
+        try {
+            if (data.getInt() != MAGIC) throw new IOException("Not a binary config");
+            var version = data.get();
+            if (version != VERSION) throw new IOException("Unsupported binary config version " + version);
+            return new Reader(data).readRoot();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated binary config", e);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed decimal in binary config", e);
+        }
+    }
+
+    @Override
+    public byte @NotNull [] write(@NotNull JsonElement data) {
+        var strings = new HashMap<String, Integer>();
+        var stringList = new ArrayList<String>();
+        collectStrings(data, strings, stringList);
+
+        var out = new Output();
+        out.writeInt(MAGIC);
+        out.write(VERSION);
+        out.writeVarInt(stringList.size());
+        for (var string : stringList) {
+            var bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeVarInt(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+        writeValue(out, data, strings);
+        return out.toByteArray();
+    }
+
+    private static void collectStrings(JsonElement element, Map<String, Integer> strings, List<String> stringList) {
+        if (element instanceof JsonObject object) {
+            for (var entry : object.entrySet()) {
+                addString(entry.getKey(), strings, stringList);
+                collectStrings(entry.getValue(), strings, stringList);
+            }
+        } else if (element instanceof JsonArray array) {
+            for (var child : array) {
+                collectStrings(child, strings, stringList);
+            }
+        } else if (element instanceof JsonPrimitive primitive) {
+            if (primitive.isString()) {
+                addString(primitive.getAsString(), strings, stringList);
+            } else if (primitive.isNumber() && getNumberTag(primitive.getAsNumber()) == DECIMAL) {
+                addString(primitive.getAsNumber().toString(), strings, stringList);
+            }
+        }
+    }
+
+    private static void addString(String string, Map<String, Integer> strings, List<String> stringList) {
+        if (strings.putIfAbsent(string, stringList.size()) == null) stringList.add(string);
+    }
+
+    private static void writeValue(Output out, JsonElement element, Map<String, Integer> strings) {
+        if (element instanceof JsonObject object) {
+            out.write(OBJECT);
+            out.writeVarInt(object.size());
+            for (var entry : object.entrySet()) {
+                out.writeVarInt(strings.get(entry.getKey()));
+                writeValue(out, entry.getValue(), strings);
+            }
+        } else if (element instanceof JsonArray array) {
+            out.write(ARRAY);
+            out.writeVarInt(array.size());
+            for (var child : array) {
+                writeValue(out, child, strings);
+            }
+        } else if (element instanceof JsonPrimitive primitive) {
+            if (primitive.isBoolean()) {
+                out.write(primitive.getAsBoolean() ? TRUE : FALSE);
+            } else if (primitive.isString()) {
+                out.write(STRING);
+                out.writeVarInt(strings.get(primitive.getAsString()));
+            } else {
+                var number = primitive.getAsNumber();
+                var tag = getNumberTag(number);
+                out.write(tag);
+                switch (tag) {
+                    case INTEGER -> out.writeVarLong(zigzag(parseLong(number)));
+                    case DOUBLE -> out.writeLong(Double.doubleToRawLongBits(number.doubleValue()));
+                    default -> out.writeVarInt(strings.get(number.toString()));
+                }
+            }
+        } else {
+            out.write(NULL);
+        }
+    }
+
+    /**
+     * Picks the tag for a number so that it reads back as the same json text.
+     * Floats are stored as decimals, as widening them to doubles would change their text.
+     */
+    private static byte getNumberTag(Number number) {
+        if (number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte) return INTEGER;
+        if (number instanceof Double) return DOUBLE;
+        if (number instanceof Float f && !Float.isFinite(f)) return DOUBLE; // BigDecimal can't represent these
+        // Numbers parsed from json text are lazily parsed, so check whether the text is an integer
+        try {
+            Long.parseLong(number.toString());
+            return INTEGER;
+        } catch (NumberFormatException e) {
+            return DECIMAL;
+        }
+    }
+
+    private static long parseLong(Number number) {
+        if (number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte) return number.longValue();
+        return Long.parseLong(number.toString());
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    @Override
+    public String toString() {
+        return "BinaryConfigFormat";
+    }
+
+    /**
+     * Reads values directly from the buffer. Strings and their primitives are only created once per entry in the string table.
+     */
+    private static final class Reader {
+        private final ByteBuffer data;
+        private final String[] strings;
+        private final JsonPrimitive[] primitives;
+
+        private Reader(ByteBuffer data) throws IOException {
+            this.data = data;
+            var count = readVarInt();
+            if (count > data.remaining()) throw new IOException("Truncated binary config");
+            this.strings = new String[count];
+            this.primitives = new JsonPrimitive[count];
+            var scratch = new byte[64];
+            for (int i = 0; i < count; i++) {
+                var length = readVarInt();
+                if (length > data.remaining()) throw new IOException("Truncated binary config");
+                if (data.hasArray()) {
+                    strings[i] = new String(data.array(), data.arrayOffset() + data.position(), length, StandardCharsets.UTF_8);
+                    data.position(data.position() + length);
+                } else {
+                    // Direct and read only buffers have no accessible array, so copy through a reused one
+                    if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+                    data.get(scratch, 0, length);
+                    strings[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+                }
+            }
+        }
+
+        private JsonElement readRoot() throws IOException {
+            var value = readValue(0);
+            if (data.hasRemaining()) throw new IOException("Trailing data after binary config");
+            return value;
+        }
+
+        private JsonElement readValue(int depth) throws IOException {
+            var tag = data.get();
+            return switch (tag) {
+                case NULL -> JsonNull.INSTANCE;
+                case FALSE -> new JsonPrimitive(false);
+                case TRUE -> new JsonPrimitive(true);
+                case INTEGER -> {
+                    var encoded = readVarLong();
+                    yield new JsonPrimitive((encoded >>> 1) ^ -(encoded & 1));
+                }
+                case DOUBLE -> new JsonPrimitive(Double.longBitsToDouble(data.getLong()));
+                case STRING -> readStringPrimitive();
+                case DECIMAL -> readDecimal();
+                case ARRAY -> {
+                    var size = readSize(depth);
+                    var array = new JsonArray(size);
+                    for (int i = 0; i < size; i++) {
+                        array.add(readValue(depth + 1));
+                    }
+                    yield array;
+                }
+                case OBJECT -> {
+                    var size = readSize(depth);
+                    var object = new JsonObject();
+                    for (int i = 0; i < size; i++) {
+                        var key = readString();
+                        object.add(key, readValue(depth + 1));
+                    }
+                    yield object;
+                }
+                default -> throw new IOException("Unknown tag %s in binary config".formatted(tag));
+            };
+        }
+
+        /**
+         * Reads the size of an array or object. Every element takes at least one byte, so larger sizes can't be valid.
+         */
+        private int readSize(int depth) throws IOException {
+            if (depth >= MAX_DEPTH) throw new IOException("Binary config is nested too deeply");
+            var size = readVarInt();
+            if (size > data.remaining()) throw new IOException("Truncated binary config");
+            return size;
+        }
+
+        /**
+         * Reads a decimal as a lazily parsed number, as converting it to a {@link BigDecimal} would change the text of exponents.
+         * It is still parsed once to make sure the text is a valid number.
+         */
+        private JsonPrimitive readDecimal() throws IOException {
+            var text = readString();
+            new BigDecimal(text);
+            return new JsonPrimitive(new LazilyParsedNumber(text));
+        }
+
+        private String readString() throws IOException {
+            var index = readVarInt();
+            if (index >= strings.length) throw new IOException("String index %s out of bounds in binary config".formatted(index));
+            return strings[index];
+        }
+
+        private JsonPrimitive readStringPrimitive() throws IOException {
+            var index = readVarInt();
+            if (index >= strings.length) throw new IOException("String index %s out of bounds in binary config".formatted(index));
+            var primitive = primitives[index];
+            if (primitive == null) primitive = primitives[index] = new JsonPrimitive(strings[index]);
+            return primitive;
+        }
+
+        private int readVarInt() throws IOException {
+            var value = readVarLong();
+            if (value < 0 || value > Integer.MAX_VALUE) throw new IOException("Varint out of range in binary config");
+            return (int) value;
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                var b = data.get();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IOException("Varint too long in binary config");
+        }
+    }
+
+    private static final class Output extends ByteArrayOutputStream {
+        private Output() {
+            super(256);
+        }
+
+        private void writeInt(int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        private void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        private void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package io.github.mattidragon.configloader.impl;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Differences between two json objects, used to sync changes without sending whole configs.
+ * A delta is an object with a sparse {@code changed} object, which is merged onto the base like a {@link ConfigLayers layer},
+ * and a {@code removed} array with the paths of removed values.
+ */
+final class ConfigDelta {
+    private ConfigDelta() {
+    }
+
+    /**
+     * Creates a delta that turns one object into another.
+     * @return The delta, or {@code null} if the objects are equal.
+     */
+    @Nullable
+    static JsonObject diff(JsonObject previous, JsonObject current) {
+        var removed = new JsonArray();
+        var changed = diff(previous, current, new JsonArray(), removed);
+        if (changed.size() == 0 && removed.isEmpty()) return null;
+
+        var delta = new JsonObject();
+        delta.add("changed", changed);
+        delta.add("removed", removed);
+        return delta;
+    }
+
+    private static JsonObject diff(JsonObject previous, JsonObject current, JsonArray path, JsonArray removed) {
+        var changed = new JsonObject();
+        for (var entry : current.entrySet()) {
+            var key = entry.getKey();
+            var value = entry.getValue();
+            var previousValue = previous.get(key);
+            if (value.equals(previousValue)) continue;
+
+            // Objects are merged when applying, so only their changed contents are needed
+            if (value instanceof JsonObject object && previousValue instanceof JsonObject previousObject) {
+                var childPath = path.deepCopy();
+                childPath.add(key);
+                var child = diff(previousObject, object, childPath, removed);
+                if (child.size() != 0) changed.add(key, child);
+            } else {
+                changed.add(key, value);
+            }
+        }
+        for (var key : previous.keySet()) {
+            if (!current.has(key)) {
+                var removedPath = path.deepCopy();
+                removedPath.add(key);
+                removed.add(removedPath);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Applies a delta to an object. The object isn't modified, unchanged values are shared with the result.
+     * @throws IllegalArgumentException If the delta is malformed.
+     */
+    static JsonObject apply(JsonObject base, JsonObject delta) {
+        if (!(delta.get("changed") instanceof JsonObject changed) || !(delta.get("removed") instanceof JsonArray removed)) {
+            throw new IllegalArgumentException("Malformed config delta");
+        }
+        var result = ConfigLayers.merge(base, changed);
+        for (var path : removed) {
+            if (!(path instanceof JsonArray array) || array.isEmpty()) throw new IllegalArgumentException("Malformed path in config delta");
+            result = remove(result, array, 0);
+        }
+        return result;
+    }
+
+    private static JsonObject remove(JsonObject object, JsonArray path, int index) {
+        if (!(path.get(index) instanceof JsonPrimitive primitive) || !primitive.isString()) {
+            throw new IllegalArgumentException("Malformed path in config delta");
+        }
+        var key = primitive.getAsString();
+        var child = object.get(key);
+        if (child == null) return object;
+
+        var copy = new JsonObject();
+        for (var entry : object.entrySet()) {
+            copy.add(entry.getKey(), entry.getValue());
+        }
+        if (index == path.size() - 1) {
+            copy.remove(key);
+        } else if (child instanceof JsonObject childObject) {
+            copy.add(key, remove(childObject, path, index + 1));
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,126 @@
+package io.github.mattidragon.configloader.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches config files for external changes on a single shared thread.
+ * Editors tend to produce several events per save, so changes are only reported once a file has been quiet for a short while.
+ */
+final class ConfigFileWatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger("ConfigLoader/ConfigFileWatcher");
+    private static final long DEBOUNCE_MILLIS = 250;
+    private static ConfigFileWatcher instance;
+
+    private final WatchService service;
+    private final Map<Path, Runnable> files = new ConcurrentHashMap<>();
+    private final Set<Path> directories = ConcurrentHashMap.newKeySet();
+    // Only accessed from the watcher thread
+    private final Map<Path, Long> pending = new HashMap<>();
+
+    private ConfigFileWatcher(WatchService service) {
+        this.service = service;
+    }
+
+    /**
+     * Starts watching a file.
+     * @param file The file to watch.
+     * @param onChange Called on the watcher thread when the file has been changed or created.
+     */
+    static synchronized void register(Path file, Runnable onChange) {
+        try {
+            if (instance == null) {
+                instance = new ConfigFileWatcher(FileSystems.getDefault().newWatchService());
+                var thread = new Thread(instance::run, "ConfigToolkit File Watcher");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            instance.watch(file.toAbsolutePath().normalize(), onChange);
+        } catch (IOException e) {
+            LOGGER.error("Failed to watch config file {}", file, e);
+        }
+    }
+
+    /**
+     * Stops watching a file, if it is still watched with the same callback.
+     */
+    static synchronized void unregister(Path file, Runnable onChange) {
+        if (instance != null) instance.files.remove(file.toAbsolutePath().normalize(), onChange);
+    }
+
+    private void watch(Path file, Runnable onChange) throws IOException {
+        var directory = file.getParent();
+        if (directories.add(directory)) {
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        files.put(file, onChange);
+    }
+
+    private void run() {
+        while (true) {
+            try {
+                WatchKey key;
+                if (pending.isEmpty()) {
+                    key = service.take();
+                } else {
+                    var nextDeadline = pending.values().stream().mapToLong(Long::longValue).min().orElseThrow();
+                    key = service.poll(Math.max(0, nextDeadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                }
+                if (key != null) {
+                    collectEvents(key);
+                }
+                fireDue();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                LOGGER.warn("Config file watcher stopped", e);
+                return;
+            } catch (RuntimeException e) {
+                LOGGER.error("Error in config file watcher", e);
+            }
+        }
+    }
+
+    private void collectEvents(WatchKey key) {
+        var directory = (Path) key.watchable();
+        var deadline = System.currentTimeMillis() + DEBOUNCE_MILLIS;
+        for (var event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were lost, so we have to assume everything in the directory changed
+                files.keySet()
+                        .stream()
+                        .filter(file -> file.getParent().equals(directory))
+                        .forEach(file -> pending.put(file, deadline));
+                continue;
+            }
+            var file = directory.resolve((Path) event.context());
+            if (files.containsKey(file)) {
+                pending.put(file, deadline);
+            }
+        }
+        key.reset();
+    }
+
+    private void fireDue() {
+        var now = System.currentTimeMillis();
+        var iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            var entry = iterator.next();
+            if (entry.getValue() > now) continue;
+            iterator.remove();
+            var onChange = files.get(entry.getKey());
+            if (onChange == null) continue; // Unregistered in the meantime
+            try {
+                onChange.run();
+            } catch (RuntimeException e) {
+                LOGGER.error("Failed to handle change of config file {}", entry.getKey(), e);
+            }
+        }
+    }
+}
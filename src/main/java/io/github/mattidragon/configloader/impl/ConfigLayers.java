@@ -0,0 +1,172 @@
+package io.github.mattidragon.configloader.impl;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The json layers of a layered config, from lowest to highest priority: defaults, the global file, the instance file, the overlay
+ * and the values synced from a server.
+ * All layers except the defaults are sparse, only containing values that differ from the layers below.
+ * Immutable, changing a layer only merges that layer and the ones above it again.
+ * None of the contained json is ever modified, so it is shared between instances.
+ */
+final class ConfigLayers {
+    private static final JsonObject EMPTY = new JsonObject();
+
+    private final JsonObject defaults;
+    private final JsonObject global;
+    private final JsonObject instance;
+    private final JsonObject overlay;
+    private final JsonObject sync;
+    private final JsonObject mergedGlobal;
+    private final JsonObject mergedInstance;
+    private final JsonObject merged;
+    /**
+     * The instance and overlay layers merged together. Values here are never written to the global file.
+     */
+    private final JsonObject upper;
+
+    private ConfigLayers(JsonObject defaults, JsonObject global, JsonObject instance, JsonObject overlay, JsonObject sync,
+                         JsonObject mergedGlobal, JsonObject mergedInstance) {
+        this.defaults = defaults;
+        this.global = global;
+        this.instance = instance;
+        this.overlay = overlay;
+        this.sync = sync;
+        this.mergedGlobal = mergedGlobal;
+        this.mergedInstance = mergedInstance;
+        this.merged = merge(merge(mergedInstance, overlay), sync);
+        this.upper = merge(instance, overlay);
+    }
+
+    static ConfigLayers of(JsonObject defaults) {
+        return new ConfigLayers(defaults, EMPTY, EMPTY, EMPTY, EMPTY, defaults, defaults);
+    }
+
+    ConfigLayers withGlobal(JsonObject global) {
+        if (global.equals(this.global)) return this;
+        var mergedGlobal = merge(defaults, global);
+        return new ConfigLayers(defaults, global, instance, overlay, sync, mergedGlobal, merge(mergedGlobal, instance));
+    }
+
+    ConfigLayers withInstance(JsonObject instance) {
+        if (instance.equals(this.instance)) return this;
+        return new ConfigLayers(defaults, global, instance, overlay, sync, mergedGlobal, merge(mergedGlobal, instance));
+    }
+
+    ConfigLayers withOverlay(JsonObject overlay) {
+        if (overlay.equals(this.overlay)) return this;
+        return new ConfigLayers(defaults, global, instance, overlay, sync, mergedGlobal, mergedInstance);
+    }
+
+    /**
+     * Replaces the values synced from a server. Unlike the other layers this contains the full config of the server, not just differences.
+     */
+    ConfigLayers withSync(JsonObject sync) {
+        if (sync.equals(this.sync)) return this;
+        return new ConfigLayers(defaults, global, instance, overlay, sync, mergedGlobal, mergedInstance);
+    }
+
+    /**
+     * Checks whether this was created from the same instance, overlay and sync layers as another instance,
+     * meaning that replacing the other with this one only changes the global layer.
+     */
+    boolean hasSameUpperLayers(ConfigLayers other) {
+        return defaults == other.defaults && instance == other.instance && overlay == other.overlay && sync == other.sync;
+    }
+
+    /**
+     * Checks whether any layer above the global one has values, in which case the merged value can differ from a set value.
+     */
+    boolean hasUpperLayers() {
+        return upper.size() != 0 || sync.size() != 0;
+    }
+
+    JsonObject global() {
+        return global;
+    }
+
+    /**
+     * The merged layers without the overlay and synced values.
+     */
+    JsonObject mergedInstance() {
+        return mergedInstance;
+    }
+
+    JsonObject merged() {
+        return merged;
+    }
+
+    /**
+     * Creates a new global layer from a fully encoded config.
+     * Only values that differ from the defaults are kept. Values that are defined by the instance or overlay layers
+     * keep what the current global layer has, so that they don't leak into the global file.
+     * Values that are the same as the synced ones also keep what the global layer has, as they weren't changed locally,
+     * while values that differ from them are stored, so that local changes are saved while connected to a server.
+     */
+    JsonObject toGlobalLayer(JsonObject encoded) {
+        var result = sparse(encoded, defaults, upper, sync.size() == 0 ? null : sync, global);
+        return result instanceof JsonObject object ? object : new JsonObject();
+    }
+
+    /**
+     * Finds the values that differ from a layer.
+     * @param value The full value.
+     * @param below The merged layers below, which values are compared to.
+     * @param upper Values of layers above that are never stored, so the existing value is kept instead.
+     * @param synced Synced values. The existing value is kept if the value is the same as this.
+     * @param existing The current value of the layer, if any.
+     * @return The sparse value, or {@code null} if nothing differs.
+     */
+    @Nullable
+    private static JsonElement sparse(JsonElement value, @Nullable JsonElement below, @Nullable JsonElement upper, @Nullable JsonElement synced, @Nullable JsonElement existing) {
+        if (upper != null && !(upper.isJsonObject() && value.isJsonObject())) return existing;
+        if (synced != null && !(synced.isJsonObject() && value.isJsonObject()) && value.equals(synced)) return existing;
+
+        if (value instanceof JsonObject object) {
+            var belowObject = below instanceof JsonObject o ? o : null;
+            var upperObject = upper instanceof JsonObject o ? o : null;
+            var syncedObject = synced instanceof JsonObject o ? o : null;
+            var existingObject = existing instanceof JsonObject o ? o : null;
+            var result = new JsonObject();
+            for (var entry : object.entrySet()) {
+                var key = entry.getKey();
+                var child = sparse(entry.getValue(),
+                        belowObject == null ? null : belowObject.get(key),
+                        upperObject == null ? null : upperObject.get(key),
+                        syncedObject == null ? null : syncedObject.get(key),
+                        existingObject == null ? null : existingObject.get(key));
+                if (child != null) result.add(key, child);
+            }
+            // Keep empty objects that don't exist below, so that they still decode the same
+            return result.size() == 0 && belowObject != null ? null : result;
+        }
+
+        return value.equals(below) ? null : value;
+    }
+
+    /**
+     * Merges a layer onto a base. Objects are merged recursively, everything else is replaced by the layer.
+     * Returns the base itself if the layer is empty.
+     */
+    static JsonObject merge(JsonObject base, JsonObject layer) {
+        if (layer.size() == 0) return base;
+        if (base.size() == 0) return layer;
+
+        var result = new JsonObject();
+        for (var entry : base.entrySet()) {
+            result.add(entry.getKey(), entry.getValue());
+        }
+        for (var entry : layer.entrySet()) {
+            var key = entry.getKey();
+            var baseValue = result.get(key);
+            if (baseValue instanceof JsonObject baseObject && entry.getValue() instanceof JsonObject layerObject) {
+                result.add(key, merge(baseObject, layerObject));
+            } else {
+                result.add(key, entry.getValue());
+            }
+        }
+        return result;
+    }
+}
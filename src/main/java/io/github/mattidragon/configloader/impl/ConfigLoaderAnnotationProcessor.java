@@ -8,18 +8,30 @@ import io.determann.shadow.api.shadow.Declared;
 import io.determann.shadow.api.shadow.Record;
 import io.determann.shadow.api.shadow.RecordComponent;
 import io.determann.shadow.api.shadow.Shadow;
-import io.determann.shadow.api.wrapper.AnnotationValueTypeChooser;
+import org.jetbrains.annotations.Nullable;
 
 import javax.annotation.processing.SupportedAnnotationTypes;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.IntStream;
 
 import static io.determann.shadow.api.ShadowApi.convert;
 
@@ -27,9 +39,31 @@ import static io.determann.shadow.api.ShadowApi.convert;
 @SupportedSourceVersion(SourceVersion.RELEASE_17)
 public class ConfigLoaderAnnotationProcessor extends ShadowProcessor {
     public static final String GENERATE_MUTABLE_ANNOTATION = "io.github.mattidragon.configloader.api.GenerateMutable";
+    private static final ClassName CONFIG_DIFFER = ClassName.get("io.github.mattidragon.configloader.api", "ConfigDiffer");
+    private static final ClassName JSON_STREAM_CODEC = ClassName.get("io.github.mattidragon.configloader.api", "JsonStreamCodec");
+    // Gson isn't on the annotation processor classpath, so we can't reference these as classes
+    private static final ClassName JSON_READER = ClassName.get("com.google.gson.stream", "JsonReader");
+    private static final ClassName JSON_WRITER = ClassName.get("com.google.gson.stream", "JsonWriter");
+    private static final String INDEXED_ANNOTATION = "io.github.mattidragon.configloader.api.Indexed";
+    private static final ClassName PREFIX_MATCHER = ClassName.get("io.github.mattidragon.configloader.api", "PrefixMatcher");
+    // Fastutil comes with minecraft and isn't on the annotation processor classpath either
+    private static final ClassName INT_SET = ClassName.get("it.unimi.dsi.fastutil.ints", "IntOpenHashSet");
+    private static final ClassName LONG_SET = ClassName.get("it.unimi.dsi.fastutil.longs", "LongOpenHashSet");
+    private static final ClassName INT_MAP = ClassName.get("it.unimi.dsi.fastutil.ints", "Int2ObjectOpenHashMap");
+    private static final ClassName LONG_MAP = ClassName.get("it.unimi.dsi.fastutil.longs", "Long2ObjectOpenHashMap");
+
+    // Lookups done many times per record, cached by qualified name for the current round
+    private final Map<String, RecordInfo> recordInfos = new HashMap<>();
+    private final Map<String, Boolean> mutableRecords = new HashMap<>();
+    private final Map<String, ClassName> mutableNames = new HashMap<>();
 
     @Override
     public void process(ShadowApi api) {
+        // Elements can't be reused across rounds
+        recordInfos.clear();
+        mutableRecords.clear();
+        mutableNames.clear();
+
         var annotated = api.getAnnotatedWith(GENERATE_MUTABLE_ANNOTATION);
         annotated.declaredTypes() // Everything should be declared
                 .stream()
@@ -71,9 +105,9 @@ public class ConfigLoaderAnnotationProcessor extends ShadowProcessor {
     }
 
     private TypeSpec generateMutable(Record record, boolean inner) {
-        var useGetters = record.getDirectUsageOfOrThrow(record.getApi().getAnnotationOrThrow(GENERATE_MUTABLE_ANNOTATION))
-                .getValueOrThrow("encapsulateFields")
-                .asBoolean();
+        var info = getRecordInfo(record);
+        var useGetters = info.encapsulateFields();
+        var generateCodec = info.generateCodec();
         var components = record.getRecordComponents();
         var mutableName = "Mutable" + record.getSimpleName();
         var recordTypeName = TypeName.get(record.getMirror());
@@ -90,17 +124,25 @@ public class ConfigLoaderAnnotationProcessor extends ShadowProcessor {
                         .addStatement("return this.$L", component.getSimpleName())
                         .build())
                 .toList();
-        var setters = components.stream()
-                .map(component -> MethodSpec.methodBuilder(getSetterName(component))
-                        .addModifiers(Modifier.PUBLIC)
-                        .addParameter(getMutableOrSelf(component.getType()), component.getSimpleName())
-                        .addStatement("this.$L = $L", component.getSimpleName(), component.getSimpleName())
-                        .build())
+        // Setters mark fields as dirty in a bitmask, public fields have to be compared with the source instead
+        var trackDirty = useGetters && components.size() <= Long.SIZE;
+        var setters = IntStream.range(0, components.size())
+                .mapToObj(index -> {
+                    var component = components.get(index);
+                    var setter = MethodSpec.methodBuilder(getSetterName(component))
+                            .addModifiers(Modifier.PUBLIC)
+                            .addParameter(getMutableOrSelf(component.getType()), component.getSimpleName())
+                            .addStatement("this.$L = $L", component.getSimpleName(), component.getSimpleName());
+                    if (trackDirty) setter.addStatement("this.dirty_ |= 1L << $L", index);
+                    return setter.build();
+                })
                 .toList();
 
         var constructorBuilder = MethodSpec.constructorBuilder()
                 .addModifiers(Modifier.PRIVATE)
                 .addParameter(getMutable(record).nestedClass("Source"), "immutable")
+                // The source interface is sealed, so this is always safe
+                .addStatement("this.source_ = ($T) immutable", recordTypeName)
                 .addCode(components.stream()
                         .map(component -> {
                             var hasMutable = convert(component.getType()).toDeclared().map(this::hasMutable).orElse(false);
@@ -110,20 +152,38 @@ public class ConfigLoaderAnnotationProcessor extends ShadowProcessor {
                         .collect(CodeBlock.joining("\n")));
         var constructor = constructorBuilder.build();
 
-        var toImmutable = MethodSpec.methodBuilder("toImmutable")
+        // Returns the source record if nothing changed, so that unmodified mutables don't allocate.
+        // Built records become the new source, so repeated calls only allocate again after further changes.
+        var toImmutableBuilder = MethodSpec.methodBuilder("toImmutable")
                 .addModifiers(Modifier.PUBLIC)
-                .returns(recordTypeName)
-                .addStatement(CodeBlock.builder()
-                        .add("return new $T(", recordTypeName)
-                        .add(components.stream()
-                                .map(component -> {
-                                    var hasMutable = convert(component.getType()).toDeclared().map(this::hasMutable).orElse(false);
-                                    if (hasMutable) return CodeBlock.of("this.$L.toImmutable()", component.getSimpleName());
-                                    return CodeBlock.of("this.$L", component.getSimpleName());
-                                }).collect(CodeBlock.joining(", ")))
-                        .add(")")
-                        .build())
-                .build();
+                .returns(recordTypeName);
+        var unchangedChecks = new ArrayList<CodeBlock>();
+        if (trackDirty) unchangedChecks.add(CodeBlock.of("this.dirty_ == 0"));
+        var constructorArguments = new ArrayList<CodeBlock>();
+        for (var component : components) {
+            var name = component.getSimpleName();
+            var hasMutable = convert(component.getType()).toDeclared().map(this::hasMutable).orElse(false);
+            if (hasMutable) {
+                toImmutableBuilder.addStatement("$T $L_ = this.$L.toImmutable()", TypeName.get(component.getType().getMirror()), name, name);
+                unchangedChecks.add(CodeBlock.of("$L_ == this.source_.$L()", name, name));
+                constructorArguments.add(CodeBlock.of("$L_", name));
+            } else {
+                if (!trackDirty) unchangedChecks.add(CodeBlock.of("this.$L == this.source_.$L()", name, name));
+                constructorArguments.add(CodeBlock.of("this.$L", name));
+            }
+        }
+        if (unchangedChecks.isEmpty()) {
+            // No components, so nothing can change
+            toImmutableBuilder.addStatement("return this.source_");
+        } else {
+            toImmutableBuilder.beginControlFlow("if ($L)", CodeBlock.join(unchangedChecks, " && "))
+                    .addStatement("return this.source_")
+                    .endControlFlow()
+                    .addStatement("this.source_ = new $T($L)", recordTypeName, CodeBlock.join(constructorArguments, ", "));
+            if (trackDirty) toImmutableBuilder.addStatement("this.dirty_ = 0");
+            toImmutableBuilder.addStatement("return this.source_");
+        }
+        var toImmutable = toImmutableBuilder.build();
 
         var innerMutables = ElementFilter.typesIn(record.getMirror().asElement().getEnclosedElements())
                 .stream()
@@ -135,40 +195,49 @@ public class ConfigLoaderAnnotationProcessor extends ShadowProcessor {
         var classBuilder = TypeSpec.classBuilder(mutableName);
 
         classBuilder.addModifiers(Modifier.PUBLIC, Modifier.FINAL);
+        // Each file only depends on the record it's generated from, which lets gradle treat the processor as isolating
         if (inner) classBuilder.addModifiers(Modifier.STATIC);
+        else classBuilder.addOriginatingElement(record.getElement());
 
+        classBuilder.addField(recordTypeName, "source_", Modifier.PRIVATE);
+        if (trackDirty) classBuilder.addField(TypeName.LONG, "dirty_", Modifier.PRIVATE);
         classBuilder.addFields(fields);
 
         classBuilder.addMethod(constructor).addMethod(toImmutable);
+        classBuilder.addMethods(createDiffMethods(record));
         if (useGetters) classBuilder.addMethods(getters).addMethods(setters);
 
         classBuilder.addTypes(innerMutables).addType(accessInterface);
+        if (generateCodec) createStreamCodec(record).ifPresent(classBuilder::addType);
+        createIndex(record).ifPresent(classBuilder::addType);
 
         return classBuilder.build();
     }
 
-    private static String getGetterName(RecordComponent component) {
-        var fancy = component.getRecord().getDirectUsageOf(component.getApi().getAnnotationOrThrow(GENERATE_MUTABLE_ANNOTATION))
-                .map(annotationUsage -> annotationUsage.getValueOrThrow("useFancyMethodNames"))
-                .map(AnnotationValueTypeChooser::asBoolean)
-                .orElse(false);
-
-
+    private String getGetterName(RecordComponent component) {
+        var fancy = getRecordInfo(component.getRecord()).useFancyMethodNames();
         String simpleName = component.getSimpleName();
         return fancy ? "get" + Character.toUpperCase(simpleName.charAt(0)) + simpleName.substring(1) : simpleName;
     }
 
-    private static String getSetterName(RecordComponent component) {
-        var fancy = component.getRecord().getDirectUsageOf(component.getApi().getAnnotationOrThrow(GENERATE_MUTABLE_ANNOTATION))
-                .map(annotationUsage -> annotationUsage.getValueOrThrow("useFancyMethodNames"))
-                .map(AnnotationValueTypeChooser::asBoolean)
-                .orElse(false);
-
-
+    private String getSetterName(RecordComponent component) {
+        var fancy = getRecordInfo(component.getRecord()).useFancyMethodNames();
         String simpleName = component.getSimpleName();
         return fancy ? "set" + Character.toUpperCase(simpleName.charAt(0)) + simpleName.substring(1) : simpleName;
     }
 
+    /**
+     * Reads the options of the {@code GenerateMutable} annotation on a record, once per round.
+     */
+    private RecordInfo getRecordInfo(Record record) {
+        return recordInfos.computeIfAbsent(record.getQualifiedName(), name -> {
+            var annotationUsage = record.getDirectUsageOfOrThrow(record.getApi().getAnnotationOrThrow(GENERATE_MUTABLE_ANNOTATION));
+            return new RecordInfo(annotationUsage.getValueOrThrow("encapsulateFields").asBoolean(),
+                    annotationUsage.getValueOrThrow("generateCodec").asBoolean(),
+                    annotationUsage.getValueOrThrow("useFancyMethodNames").asBoolean());
+        });
+    }
+
     private TypeSpec createSourceInterface(Record record) {
         var accessors = record.getRecordComponents()
                 .stream()
@@ -193,8 +262,448 @@ public class ConfigLoaderAnnotationProcessor extends ShadowProcessor {
                 .build();
     }
 
+    /**
+     * Creates the static {@code changedComponents} methods, which implement {@code ConfigDiffer} for the record,
+     * along with {@code isComponentPath} for validating paths and {@code differ} which combines them.
+     * Nested records with mutable versions are compared recursively to find changed paths inside them.
+     */
+    private List<MethodSpec> createDiffMethods(Record record) {
+        var recordTypeName = TypeName.get(record.getMirror());
+        var setType = ParameterizedTypeName.get(ClassName.get(Set.class), ClassName.get(String.class));
+
+        var recursive = MethodSpec.methodBuilder("changedComponents")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(recordTypeName, "previous")
+                .addParameter(recordTypeName, "current")
+                .addParameter(String.class, "prefix")
+                .addParameter(setType, "changed")
+                .addStatement("if (previous == current) return");
+        for (var component : record.getRecordComponents()) {
+            var name = component.getSimpleName();
+            var type = component.getType().getMirror();
+            var nested = convert(component.getType()).toDeclared().filter(this::hasMutable);
+            if (nested.isPresent()) {
+                recursive.beginControlFlow("if (!$T.equals(previous.$L(), current.$L()))", Objects.class, name, name)
+                        .addStatement("changed.add(prefix + $S)", name)
+                        .beginControlFlow("if (previous.$L() != null && current.$L() != null)", name, name)
+                        .addStatement("$T.changedComponents(previous.$L(), current.$L(), prefix + $S, changed)", getMutable(nested.get()), name, name, name + ".")
+                        .endControlFlow()
+                        .endControlFlow();
+                continue;
+            }
+
+            var condition = switch (type.getKind()) {
+                // Same semantics as the equals method of records
+                case FLOAT -> CodeBlock.of("$T.compare(previous.$L(), current.$L()) != 0", Float.class, name, name);
+                case DOUBLE -> CodeBlock.of("$T.compare(previous.$L(), current.$L()) != 0", Double.class, name, name);
+                case BOOLEAN, BYTE, SHORT, CHAR, INT, LONG -> CodeBlock.of("previous.$L() != current.$L()", name, name);
+                default -> CodeBlock.of("!$T.equals(previous.$L(), current.$L())", Objects.class, name, name);
+            };
+            recursive.addStatement("if ($L) changed.add(prefix + $S)", condition, name);
+        }
+
+        var entry = MethodSpec.methodBuilder("changedComponents")
+                .addJavadoc("Finds the paths of all components that differ between two values. Can be used as a {@code ConfigDiffer}.\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(setType)
+                .addParameter(recordTypeName, "previous")
+                .addParameter(recordTypeName, "current")
+                .addStatement("var changed = new $T<$T>()", HashSet.class, String.class)
+                .addStatement("changedComponents(previous, current, \"\", changed)")
+                .addStatement("return changed")
+                .build();
+
+        // Switches on the first part of the path and checks the rest against nested records
+        var simpleNames = new ArrayList<String>();
+        var pathCases = CodeBlock.builder();
+        for (var component : record.getRecordComponents()) {
+            var nested = convert(component.getType()).toDeclared().filter(this::hasMutable);
+            if (nested.isPresent()) {
+                pathCases.addStatement("case $S -> dot == -1 || $T.isComponentPath(path.substring(dot + 1))", component.getSimpleName(), getMutable(nested.get()));
+            } else {
+                simpleNames.add(component.getSimpleName());
+            }
+        }
+        if (!simpleNames.isEmpty()) {
+            pathCases.addStatement("case $L -> dot == -1", simpleNames.stream().map(name -> CodeBlock.of("$S", name)).collect(CodeBlock.joining(", ")));
+        }
+        var isComponentPath = MethodSpec.methodBuilder("isComponentPath")
+                .addJavadoc("Checks whether a path names a component that {@code changedComponents} can report.\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(TypeName.BOOLEAN)
+                .addParameter(String.class, "path")
+                .addStatement("int dot = path.indexOf('.')")
+                .addCode("return switch (dot == -1 ? path : path.substring(0, dot)) {\n$>")
+                .addCode(pathCases.build())
+                .addStatement("default -> false")
+                .addCode("$<};\n")
+                .build();
+
+        var mutableName = getMutable(record);
+        var differ = MethodSpec.methodBuilder("differ")
+                .addJavadoc("Creates a {@code ConfigDiffer} for the record, which also rejects unknown paths in component listeners.\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(ParameterizedTypeName.get(CONFIG_DIFFER, recordTypeName))
+                .addStatement("return $T.of($T::changedComponents, $T::isComponentPath)", CONFIG_DIFFER, mutableName, mutableName)
+                .build();
+
+        return List.of(entry, recursive.build(), isComponentPath, differ);
+    }
+
+    /**
+     * Creates a {@link JsonStreamCodec} for the record. Reading and writing is done by static methods, so that codecs of nested records can be called directly.
+     * @return The codec class, or empty if any component has an unsupported type, in which case errors have been logged.
+     */
+    private Optional<TypeSpec> createStreamCodec(Record record) {
+        var recordTypeName = TypeName.get(record.getMirror());
+        var components = record.getElement().getRecordComponents();
+        var messager = record.getApi().getJdkApiContext().getProcessingEnv().getMessager();
+
+        var readCases = CodeBlock.builder();
+        var writeStatements = CodeBlock.builder();
+        var valid = true;
+        for (var component : components) {
+            var name = component.getSimpleName().toString();
+            var type = component.asType();
+            var reader = createValueReader(record, type, CodeBlock.of("defaults_.$L()", name), 0);
+            var writer = createValueWrite(record, type, CodeBlock.of("writer_"), CodeBlock.of("value_.$L()", name), 0);
+            if (reader.isEmpty() || writer.isEmpty()) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "Type %s is not supported by generated codecs".formatted(type), component);
+                valid = false;
+                continue;
+            }
+            readCases.addStatement("case $S -> $L = $T.readField(reader_, $S, defaults_.$L(), $L)", name, name, JSON_STREAM_CODEC, name, name, reader.get());
+            writeStatements.addStatement("writer_.name($S)", name)
+                    .addStatement(writer.get());
+        }
+        if (!valid) return Optional.empty();
+
+        var readValue = MethodSpec.methodBuilder("readValue")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(recordTypeName)
+                .addParameter(JSON_READER, "reader_")
+                .addParameter(recordTypeName, "defaults_")
+                .addException(IOException.class)
+                .addCode(components.stream()
+                        .map(component -> CodeBlock.of("$T $L = defaults_.$L();\n", TypeName.get(component.asType()), component.getSimpleName(), component.getSimpleName()))
+                        .collect(CodeBlock.joining("")))
+                .addStatement("$T.beginObject(reader_)", JSON_STREAM_CODEC)
+                .beginControlFlow("while (reader_.hasNext())")
+                .beginControlFlow("switch (reader_.nextName())")
+                .addCode(readCases.build())
+                .addStatement("default -> reader_.skipValue()")
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("reader_.endObject()")
+                .addStatement("return new $T($L)", recordTypeName, components.stream()
+                        .map(component -> CodeBlock.of("$L", component.getSimpleName()))
+                        .collect(CodeBlock.joining(", ")))
+                .build();
+
+        var writeValue = MethodSpec.methodBuilder("writeValue")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(JSON_WRITER, "writer_")
+                .addParameter(recordTypeName, "value_")
+                .addException(IOException.class)
+                .addStatement("writer_.beginObject()")
+                .addCode(writeStatements.build())
+                .addStatement("writer_.endObject()")
+                .build();
+
+        var constructor = MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PUBLIC)
+                .addJavadoc("@param defaults The values used for fields that are missing when decoding.\n")
+                .addParameter(recordTypeName, "defaults")
+                .addStatement("this.defaults = defaults")
+                .build();
+
+        var read = MethodSpec.methodBuilder("read")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(recordTypeName)
+                .addParameter(JSON_READER, "reader")
+                .addException(IOException.class)
+                .addStatement("return readValue(reader, this.defaults)")
+                .build();
+
+        var write = MethodSpec.methodBuilder("write")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(JSON_WRITER, "writer")
+                .addParameter(recordTypeName, "value")
+                .addException(IOException.class)
+                .addStatement("writeValue(writer, value)")
+                .build();
+
+        return Optional.of(TypeSpec.classBuilder("StreamCodec")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .superclass(ParameterizedTypeName.get(JSON_STREAM_CODEC, recordTypeName))
+                .addField(recordTypeName, "defaults", Modifier.PRIVATE, Modifier.FINAL)
+                .addMethod(constructor)
+                .addMethod(read)
+                .addMethod(write)
+                .addMethod(readValue)
+                .addMethod(writeValue)
+                .build());
+    }
+
+    /**
+     * Creates an index class with lookup structures for components annotated with {@code @Indexed}.
+     * @return The index class, or empty if no components are indexed or any indexed component is invalid, in which case errors have been logged.
+     */
+    private Optional<TypeSpec> createIndex(Record record) {
+        var recordTypeName = TypeName.get(record.getMirror());
+        var messager = record.getApi().getJdkApiContext().getProcessingEnv().getMessager();
+
+        var classBuilder = TypeSpec.classBuilder("Index")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .addJavadoc("Lookup structures for the indexed components of a config. Cache instances using {@code ConfigManager.derive(Index::new)}.\n");
+        var constructor = MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(recordTypeName, "record");
+        var indexed = false;
+        var valid = true;
+        for (var component : record.getElement().getRecordComponents()) {
+            var kind = getIndexKind(component);
+            if (kind == null) continue;
+            indexed = true;
+
+            var name = component.getSimpleName().toString();
+            var type = component.asType();
+            var arguments = type instanceof DeclaredType declared ? declared.getTypeArguments() : List.<TypeMirror>of();
+            var isCollection = switch (getQualifiedName(type)) {
+                case "java.util.List", "java.util.Set", "java.util.Collection" -> arguments.size() == 1;
+                default -> false;
+            };
+            var isMap = getQualifiedName(type).equals("java.util.Map") && arguments.size() == 2;
+
+            if (kind.equals("PREFIX")) {
+                if (!isCollection || !getQualifiedName(arguments.get(0)).equals("java.lang.String")) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "Prefix indexes are only supported for collections of strings", component);
+                    valid = false;
+                    continue;
+                }
+                addIndex(classBuilder, constructor, name, PREFIX_MATCHER, CodeBlock.of("$T.of(record.$L())", PREFIX_MATCHER, name));
+                classBuilder.addMethod(MethodSpec.methodBuilder(name + "Matches")
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(TypeName.BOOLEAN)
+                        .addParameter(CharSequence.class, "value")
+                        .addStatement("return this.$L.matches(value)", name)
+                        .build());
+            } else if (isCollection) {
+                var element = arguments.get(0);
+                var primitiveSet = switch (getQualifiedName(element)) {
+                    case "java.lang.Integer" -> INT_SET;
+                    case "java.lang.Long" -> LONG_SET;
+                    default -> null;
+                };
+                var contains = MethodSpec.methodBuilder(name + "Contains")
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(TypeName.BOOLEAN);
+                if (primitiveSet != null) {
+                    addIndex(classBuilder, constructor, name, primitiveSet, CodeBlock.of("new $T(record.$L())", primitiveSet, name));
+                    contains.addParameter(primitiveSet == INT_SET ? TypeName.INT : TypeName.LONG, "value")
+                            .addStatement("return this.$L.contains(value)", name);
+                } else {
+                    // Set.copyOf throws on null queries, wildcard elements fall back to Object
+                    var elementType = element.getKind() == javax.lang.model.type.TypeKind.WILDCARD ? TypeName.OBJECT : TypeName.get(element);
+                    addIndex(classBuilder, constructor, name, ParameterizedTypeName.get(ClassName.get(Set.class), TypeName.get(element)), CodeBlock.of("$T.copyOf(record.$L())", Set.class, name));
+                    contains.addParameter(elementType, "value")
+                            .addStatement("return value != null && this.$L.contains(value)", name);
+                }
+                classBuilder.addMethod(contains.build());
+            } else if (isMap) {
+                var map = switch (getQualifiedName(arguments.get(0))) {
+                    case "java.lang.Integer" -> INT_MAP;
+                    case "java.lang.Long" -> LONG_MAP;
+                    default -> null;
+                };
+                if (map == null) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "Map indexes are only supported for maps with Integer or Long keys", component);
+                    valid = false;
+                    continue;
+                }
+                var valueType = TypeName.get(arguments.get(1));
+                addIndex(classBuilder, constructor, name, ParameterizedTypeName.get(map, valueType), CodeBlock.of("new $T<>(record.$L())", map, name));
+                classBuilder.addMethod(MethodSpec.methodBuilder(name + "Get")
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(arguments.get(1).getKind() == javax.lang.model.type.TypeKind.WILDCARD ? TypeName.OBJECT : valueType)
+                        .addParameter(map == INT_MAP ? TypeName.INT : TypeName.LONG, "key")
+                        .addStatement("return this.$L.get(key)", name)
+                        .build());
+            } else {
+                messager.printMessage(Diagnostic.Kind.ERROR, "Type %s can't be indexed, only lists, sets, collections and maps are supported".formatted(type), component);
+                valid = false;
+            }
+        }
+        if (!indexed || !valid) return Optional.empty();
+
+        return Optional.of(classBuilder.addMethod(constructor.build()).build());
+    }
+
+    /**
+     * Adds a field holding the index of a component, along with a getter and its initialization.
+     */
+    private static void addIndex(TypeSpec.Builder classBuilder, MethodSpec.Builder constructor, String name, TypeName type, CodeBlock initializer) {
+        classBuilder.addField(type, name, Modifier.PRIVATE, Modifier.FINAL);
+        classBuilder.addMethod(MethodSpec.methodBuilder(name)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(type)
+                .addStatement("return this.$L", name)
+                .build());
+        constructor.addStatement("this.$L = $L", name, initializer);
+    }
+
+    /**
+     * Gets the kind of index of a component.
+     * @return The name of the index kind, or {@code null} if the component isn't indexed.
+     */
+    @Nullable
+    private static String getIndexKind(Element component) {
+        return component.getAnnotationMirrors()
+                .stream()
+                .filter(annotation -> ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(INDEXED_ANNOTATION))
+                .findFirst()
+                .map(annotation -> annotation.getElementValues()
+                        .entrySet()
+                        .stream()
+                        .filter(entry -> entry.getKey().getSimpleName().contentEquals("value"))
+                        .map(entry -> ((VariableElement) entry.getValue().getValue()).getSimpleName().toString())
+                        .findFirst()
+                        .orElse("SET"))
+                .orElse(null);
+    }
+
+    /**
+     * Creates an expression of type {@code JsonStreamCodec.ValueReader} for a type.
+     * @param defaults An expression for the default value of nested records, or {@code null} inside collections where there is no default.
+     */
+    private Optional<CodeBlock> createValueReader(Record record, TypeMirror type, @Nullable CodeBlock defaults, int depth) {
+        var scalar = getScalarName(type);
+        if (scalar != null) return Optional.of(CodeBlock.of("$T::read$L", JSON_STREAM_CODEC, scalar));
+
+        var collection = getCollectionElement(type);
+        if (collection != null) {
+            return createValueReader(record, collection.element(), null, depth + 1)
+                    .map(elementReader -> CodeBlock.of("in$L -> $T.read$L(in$L, $L)", depth, JSON_STREAM_CODEC, collection.kind(), depth, elementReader));
+        }
+
+        var codec = getNestedStreamCodec(record, type);
+        if (codec != null && defaults != null) {
+            return Optional.of(CodeBlock.of("in$L -> $T.readValue(in$L, $L)", depth, codec, depth, defaults));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Creates an expression of type {@code JsonStreamCodec.ValueWriter} for a type.
+     */
+    private Optional<CodeBlock> createValueWriter(Record record, TypeMirror type, int depth) {
+        var scalar = getScalarName(type);
+        if (scalar != null) return Optional.of(CodeBlock.of("$T::write$L", JSON_STREAM_CODEC, scalar));
+
+        var collection = getCollectionElement(type);
+        if (collection != null) {
+            return createValueWriter(record, collection.element(), depth + 1)
+                    .map(elementWriter -> CodeBlock.of("(out$L, value$L) -> $T.write$L(out$L, value$L, $L)", depth, depth, JSON_STREAM_CODEC, collection.kind(), depth, depth, elementWriter));
+        }
+
+        var codec = getNestedStreamCodec(record, type);
+        if (codec != null) return Optional.of(CodeBlock.of("$T::writeValue", codec));
+        return Optional.empty();
+    }
+
+    /**
+     * Creates a statement writing a value directly, which avoids creating writer lambdas for the outermost value.
+     */
+    private Optional<CodeBlock> createValueWrite(Record record, TypeMirror type, CodeBlock writer, CodeBlock value, int depth) {
+        var scalar = getScalarName(type);
+        if (scalar != null) return Optional.of(CodeBlock.of("$T.write$L($L, $L)", JSON_STREAM_CODEC, scalar, writer, value));
+
+        var collection = getCollectionElement(type);
+        if (collection != null) {
+            return createValueWriter(record, collection.element(), depth + 1)
+                    .map(elementWriter -> CodeBlock.of("$T.write$L($L, $L, $L)", JSON_STREAM_CODEC, collection.kind(), writer, value, elementWriter));
+        }
+
+        var codec = getNestedStreamCodec(record, type);
+        if (codec != null) return Optional.of(CodeBlock.of("$T.writeValue($L, $L)", codec, writer, value));
+        return Optional.empty();
+    }
+
+    /**
+     * Gets the suffix of the {@link JsonStreamCodec} read and write methods for simple types.
+     */
+    @Nullable
+    private static String getScalarName(TypeMirror type) {
+        return switch (type.getKind()) {
+            case BOOLEAN -> "Boolean";
+            case BYTE -> "Byte";
+            case SHORT -> "Short";
+            case INT -> "Int";
+            case LONG -> "Long";
+            case FLOAT -> "Float";
+            case DOUBLE -> "Double";
+            case DECLARED -> switch (getQualifiedName(type)) {
+                case "java.lang.String" -> "String";
+                case "java.lang.Boolean" -> "Boolean";
+                case "java.lang.Byte" -> "Byte";
+                case "java.lang.Short" -> "Short";
+                case "java.lang.Integer" -> "Int";
+                case "java.lang.Long" -> "Long";
+                case "java.lang.Float" -> "Float";
+                case "java.lang.Double" -> "Double";
+                default -> null;
+            };
+            default -> null;
+        };
+    }
+
+    @Nullable
+    private static CollectionElement getCollectionElement(TypeMirror type) {
+        if (!(type instanceof DeclaredType declared)) return null;
+        var arguments = declared.getTypeArguments();
+        return switch (getQualifiedName(type)) {
+            case "java.util.List" -> arguments.size() == 1 ? new CollectionElement("List", arguments.get(0)) : null;
+            case "java.util.Map" -> arguments.size() == 2 && getQualifiedName(arguments.get(0)).equals("java.lang.String")
+                    ? new CollectionElement("Map", arguments.get(1))
+                    : null;
+            default -> null;
+        };
+    }
+
+    /**
+     * Gets the generated codec of a record type, if it has one.
+     */
+    @Nullable
+    private ClassName getNestedStreamCodec(Record record, TypeMirror type) {
+        if (!(type instanceof DeclaredType declared)) return null;
+        var element = (TypeElement) declared.asElement();
+        var generatesCodec = element.getAnnotationMirrors()
+                .stream()
+                .filter(annotation -> ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(GENERATE_MUTABLE_ANNOTATION))
+                .flatMap(annotation -> annotation.getElementValues().entrySet().stream())
+                .anyMatch(entry -> entry.getKey().getSimpleName().contentEquals("generateCodec") && Boolean.TRUE.equals(entry.getValue().getValue()));
+        if (!generatesCodec) return null;
+        return getMutable(record.getApi().getShadowFactory().<Declared>shadowFromElement(element)).nestedClass("StreamCodec");
+    }
+
+    private static String getQualifiedName(TypeMirror type) {
+        if (!(type instanceof DeclaredType declared)) return "";
+        return ((TypeElement) declared.asElement()).getQualifiedName().toString();
+    }
+
+    private record CollectionElement(String kind, TypeMirror element) {
+    }
+
+    private record RecordInfo(boolean encapsulateFields, boolean generateCodec, boolean useFancyMethodNames) {
+    }
+
     private boolean hasMutable(Declared declared) {
-        return declared.getDirectUsageOf(declared.getApi().getAnnotationOrThrow("io.github.mattidragon.configloader.api.GenerateMutable")).isPresent();
+        return mutableRecords.computeIfAbsent(declared.getQualifiedName(), name -> declared.getElement()
+                .getAnnotationMirrors()
+                .stream()
+                .anyMatch(annotation -> ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(GENERATE_MUTABLE_ANNOTATION)));
     }
 
     private TypeName getMutableOrSelf(Shadow<? extends TypeMirror> shadow) {
@@ -206,12 +715,18 @@ public class ConfigLoaderAnnotationProcessor extends ShadowProcessor {
     }
 
     private ClassName getMutable(Declared declared) {
+        var cached = mutableNames.get(declared.getQualifiedName());
+        if (cached != null) return cached;
+
+        ClassName result = null;
         if (declared.getElement().getEnclosingElement() instanceof TypeElement typeElement) {
             Declared outer = declared.getApi().getShadowFactory().shadowFromElement(typeElement);
             if (hasMutable(outer)) {
-                return getMutable(outer).nestedClass("Mutable" + declared.getSimpleName());
+                result = getMutable(outer).nestedClass("Mutable" + declared.getSimpleName());
             }
         }
-        return ClassName.get(declared.getPackage().getQualifiedName(), "Mutable" + declared.getSimpleName());
+        if (result == null) result = ClassName.get(declared.getPackage().getQualifiedName(), "Mutable" + declared.getSimpleName());
+        mutableNames.put(declared.getQualifiedName(), result);
+        return result;
     }
 }
@@ -2,144 +2,1023 @@ package io.github.mattidragon.configloader.impl;
 
 import com.google.gson.*;
 import com.mojang.serialization.Codec;
+import com.mojang.serialization.Dynamic;
 import com.mojang.serialization.JsonOps;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+import io.github.mattidragon.configloader.api.ConfigFormat;
 import io.github.mattidragon.configloader.api.ConfigManager;
+import io.github.mattidragon.configloader.api.ConfigStats;
+import io.github.mattidragon.configloader.api.JsonStreamCodec;
+import io.github.mattidragon.configloader.impl.jfr.ConfigLoadEvent;
+import io.github.mattidragon.configloader.impl.jfr.ConfigReloadEvent;
+import io.github.mattidragon.configloader.impl.jfr.ConfigSaveEvent;
 import net.fabricmc.fabric.api.event.Event;
 import net.fabricmc.fabric.api.event.EventFactory;
 import net.fabricmc.loader.api.FabricLoader;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.StringReader;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
 
 public class ConfigManagerImpl<D> implements ConfigManager<D> {
     private static final Logger LOGGER = LoggerFactory.getLogger("ConfigLoader/ConfigManagerImpl");
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+    private static final Gson GSON = JsonConfigFormat.GSON;
 
+    private final ConfigStatsRecorder stats = new ConfigStatsRecorder();
     private final Event<OnLoadCallback<D>> onChange = EventFactory.createArrayBacked(OnLoadCallback.class,
             listeners -> config -> {
-                for (var listener : listeners) {
-                    listener.onChange(config);
+                var dispatch = new ListenerDispatch(getId(), "reload event", stats);
+                try {
+                    for (var listener : listeners) {
+                        dispatch.invoke(listener, config);
+                    }
+                } finally {
+                    dispatch.finish();
                 }
             });
     private final Codec<D> codec;
     private final D defaultValue;
     private final Path path;
     private final String id;
+    private final ConfigSettings<D> settings;
+    private final List<ComponentListener<D>> componentListeners = new CopyOnWriteArrayList<>();
+    private final List<ScheduledListener<D>> scheduledListeners = new CopyOnWriteArrayList<>();
 
-    private boolean overridden = false;
-    private boolean prepared = false;
-    private D value;
+    private final Object saveLock = new Object();
+    private CompletableFuture<Void> pendingSave = CompletableFuture.completedFuture(null);
+    private D pendingSaveValue = null;
+    private long pendingSaveVersion = 0;
+    /**
+     * Held while writing the file, so that writes happen one at a time and in order.
+     */
+    private final Object fileLock = new Object();
+    /**
+     * The version of the last value written to the file. Guarded by {@link #fileLock}.
+     */
+    private long writtenVersion = 0;
+
+    private final boolean disabled;
+    private final Snapshot<D> disabledSnapshot;
+    private final Object lock = new Object();
+    /**
+     * The currently visible state of the config. Replaced as a whole on every change, so readers never need to lock.
+     * Is {@code null} until the config has been loaded for the first time.
+     */
+    private volatile Snapshot<D> snapshot = null;
+    private long lastVersion = 0;
+    /**
+     * The number of open overrides on all threads. Lets {@link #get()} skip the thread local lookup when there are none.
+     */
+    private final AtomicInteger activeOverrides = new AtomicInteger();
+    /**
+     * The innermost open override of each thread.
+     */
+    private final ThreadLocal<OverrideFrame> overrides = new ThreadLocal<>();
+    /**
+     * The state of the file as of our last read or write. Used to ignore our own writes when watching the file.
+     */
+    private volatile FileStamp knownFileStamp = null;
+    /**
+     * The json layers of the config, or {@code null} if it isn't layered. Replaced under {@link #lock}.
+     */
+    private volatile ConfigLayers layers;
+    /**
+     * The file of the instance layer, or {@code null} if there is none. Guarded by {@link #lock}.
+     */
+    private Path instanceFile = null;
+    /**
+     * Registered with the {@link ConfigFileWatcher} for the instance file, kept so that it can be unregistered when the file changes.
+     */
+    private final Runnable instanceFileListener = this::onInstanceFileChanged;
 
     public ConfigManagerImpl(Codec<D> codec, D defaultValue, String id) {
+        this(codec, defaultValue, id, ConfigSettings.defaultSettings());
+    }
+
+    public ConfigManagerImpl(Codec<D> codec, D defaultValue, String id, ConfigSettings<D> settings) {
         this.codec = codec;
         this.defaultValue = defaultValue;
         this.id = id;
-        this.path = FabricLoader.getInstance().getConfigDir().resolve(id + ".json");
+        this.settings = settings;
+        var directory = settings.directory() != null ? settings.directory() : FabricLoader.getInstance().getConfigDir();
+        this.path = directory.resolve(id + "." + settings.format().extension());
+        // Use default config for datagen
+        this.disabled = System.getProperty("fabric-api.datagen") != null || System.getProperty("fabric-api.gametest") != null;
+        this.disabledSnapshot = new Snapshot<>(defaultValue, 0);
+        this.layers = settings.layered() ? ConfigLayers.of(encodeDefaults()) : null;
 
-        this.value = defaultValue;
+        ConfigRegistryImpl.register(this);
+
+        if (settings.watchExecutor() != null && !disabled) {
+            ConfigFileWatcher.register(path, this::onFileChanged);
+        }
+    }
+
+    @Override
+    public @NotNull String getId() {
+        return id;
     }
 
     @Override
     public @NotNull D get() {
-        // Use default config for datagen
-        if (System.getProperty("fabric-api.datagen") != null || System.getProperty("fabric-api.gametest") != null) {
-            return defaultValue;
-        }
+        return visibleSnapshot().value();
+    }
 
-        prepare();
-        return value;
+    @Override
+    public long version() {
+        return visibleSnapshot().version();
+    }
+
+    @Override
+    public <R> @NotNull Supplier<R> derive(@NotNull Function<? super D, ? extends R> function) {
+        return new DerivedValue<>(function);
     }
 
     @Override
     public void set(@NotNull D config) {
-        if (overridden) {
-            LOGGER.error("Tried to set config {} while overridden", id);
-            throw new IllegalStateException("Tried to set config %s while overridden".formatted(id));
+        D previous;
+        Snapshot<D> published;
+        D visible = config;
+        // Encode before locking, only merging the layers has to be done under the lock
+        var encoded = layers == null ? null : codec.encodeStart(JsonOps.INSTANCE, config).resultOrPartial(LOGGER::error).orElse(null);
+        synchronized (lock) {
+            if (encoded instanceof JsonObject object) {
+                var current = layers;
+                layers = current.withGlobal(current.toGlobalLayer(object));
+                // Values from the upper layers take priority over the set value
+                if (layers.hasUpperLayers()) visible = decodeLayers(layers);
+            }
+            previous = publish(visible);
+            published = snapshot;
+        }
+        notifyChanged(previous, published);
+        if (settings.asyncSave()) {
+            scheduleSave(config, published.version());
+        } else {
+            save(config, published.version());
+        }
+    }
+
+    @Override
+    public @NotNull CompletableFuture<Void> flush() {
+        synchronized (saveLock) {
+            return pendingSave;
         }
-        value = config;
-        onChange.invoker().onChange(config);
-        save();
     }
 
     @Override
     public Optional<RuntimeException> reload() {
+        var event = new ConfigReloadEvent();
+        event.begin();
+        event.configId = id;
+        event.trigger = "reload";
         try {
-            load();
+            event.changed = load();
             return Optional.empty();
         } catch (RuntimeException e) {
             LOGGER.error("Failed to reload config {}", id, e);
+            event.error = e.getMessage();
+            return Optional.of(e);
+        } finally {
+            stats.recordReload();
+            event.commit();
+        }
+    }
+
+    @Override
+    public Optional<RuntimeException> setInstanceDirectory(@Nullable Path directory) {
+        requireLayered();
+        if (!disabled) currentSnapshot(); // Make sure the config is loaded, so that the initial load doesn't replace the layer
+        try {
+            Path previousFile;
+            Path file;
+            synchronized (lock) {
+                previousFile = instanceFile;
+                file = directory == null ? null : directory.resolve(id + ".json");
+                instanceFile = file;
+            }
+            if (settings.watchExecutor() != null && !disabled && !Objects.equals(previousFile, file)) {
+                if (previousFile != null) ConfigFileWatcher.unregister(previousFile, instanceFileListener);
+                if (file != null) ConfigFileWatcher.register(file, instanceFileListener);
+            }
+            updateLayers(layers -> layers.withInstance(readInstanceLayer()));
+            return Optional.empty();
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to load instance config {}", id, e);
             return Optional.of(e);
         }
     }
 
+    @Override
+    public void setOverlay(@Nullable Dynamic<?> overlay) {
+        requireLayered();
+        if (!disabled) currentSnapshot();
+        var json = overlay == null ? new JsonObject() : overlay.convert(JsonOps.INSTANCE).getValue();
+        if (!(json instanceof JsonObject object)) {
+            throw new IllegalArgumentException("Overlay of config %s isn't a map".formatted(id));
+        }
+        updateLayers(layers -> layers.withOverlay(object));
+    }
+
+    /**
+     * Replaces the values received from a server, see {@link ConfigSyncImpl}.
+     * @param sync The full config of the server, or {@code null} to remove the synced values.
+     * @throws RuntimeException If the values can't be decoded, in which case nothing changes.
+     */
+    void setSyncLayer(@Nullable JsonObject sync) {
+        requireLayered();
+        if (!disabled) currentSnapshot();
+        updateLayers(layers -> layers.withSync(sync == null ? new JsonObject() : sync));
+    }
+
+    @Override
+    public @NotNull ConfigStats getStats() {
+        return stats.snapshot();
+    }
+
     @Override
     public @NotNull Event<OnLoadCallback<D>> getReloadEvent() {
         return onChange;
     }
 
+    @Override
+    public void subscribe(@NotNull Collection<String> components, @NotNull OnLoadCallback<D> listener) {
+        var differ = settings.differ();
+        if (differ == null) {
+            throw new IllegalStateException("Config %s has no differ, which is required for component listeners".formatted(id));
+        }
+        for (var path : components) {
+            if (!differ.isComponent(path)) throw new IllegalArgumentException("Config %s has no component %s".formatted(id, path));
+        }
+        componentListeners.add(new ComponentListener<>(Set.copyOf(components), listener));
+    }
+
+    @Override
+    public void listen(@NotNull Executor executor, @NotNull ListenerPolicy policy, @NotNull OnLoadCallback<D> listener) {
+        scheduledListeners.add(new ScheduledListener<>(id, stats, executor, policy, listener));
+    }
+
     @Override
     public ConfigManager.@NotNull OverrideCloser override(@NotNull D config) {
-        if (overridden) throw new IllegalStateException("Only singe config override allowed");
-        overridden = true;
-        var previous = value;
-        value = config;
+        if (!disabled) currentSnapshot(); // Make sure the config is loaded, so that we don't load into the override
+        long version;
+        synchronized (lock) {
+            version = ++lastVersion;
+        }
+        var frame = new OverrideFrame(new Snapshot<>(config, version), overrides.get());
+        overrides.set(frame);
+        activeOverrides.incrementAndGet();
+        return frame;
+    }
+
+    private Snapshot<D> visibleSnapshot() {
+        if (disabled) return disabledSnapshot;
+        var override = currentOverride();
+        if (override != null) return override.snapshot;
+        return currentSnapshot();
+    }
+
+    /**
+     * Gets the innermost override of the current thread. Fast when no thread has an override open.
+     */
+    @Nullable
+    private OverrideFrame currentOverride() {
+        if (activeOverrides.get() == 0) return null;
+        return overrides.get();
+    }
+
+    /**
+     * Gets the visible snapshot, loading the config if it hasn't been done yet.
+     * The fast path is a single volatile read. Loading is done under the lock, so it only happens once.
+     */
+    private Snapshot<D> currentSnapshot() {
+        var current = snapshot;
+        if (current != null) return current;
+
+        synchronized (lock) {
+            if (snapshot == null) {
+                try {
+                    finishInitialLoad(readInitial());
+                } finally {
+                    // Make sure we don't retry loading on every get if it failed
+                    if (snapshot == null) publish(defaultValue);
+                }
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Loads the config on the current thread, for use in parallel preloading.
+     * @return A task that makes the loaded value visible, which must be run on the preloading thread,
+     * or {@code null} if the config was already loaded.
+     */
+    @Nullable
+    Runnable preload() {
+        if (disabled || snapshot != null) return null;
+
+        var initial = readInitial();
         return () -> {
-            value = previous;
-            overridden = false;
+            synchronized (lock) {
+                // Someone might have gotten the config while we were loading, in which case it has already been loaded
+                if (snapshot == null) finishInitialLoad(initial);
+            }
         };
     }
 
-    private void prepare() {
-        if (prepared) return;
-        prepared = true;
+    /**
+     * Does the expensive part of loading the config for the first time, which doesn't require holding the lock.
+     * Only reads the file, writing is left to {@link #finishInitialLoad}.
+     */
+    private InitialLoad<D> readInitial() {
+        return new InitialLoad<>(Files.exists(path) ? read(false) : null);
+    }
 
-        if (Files.exists(path)) {
-            load();
-        } else {
-            save();
+    /**
+     * Publishes the initially loaded value and writes the file if it is missing or outdated.
+     * Writing happens here rather than while reading, so that a preload finishing late can't overwrite a value that was set in the meantime.
+     * Must be called while holding {@link #lock} and only if the config hasn't been loaded yet.
+     */
+    private void finishInitialLoad(InitialLoad<D> initial) {
+        // Write before publishing, so that the config stays unloaded if writing fails
+        var version = lastVersion + 1;
+        if (initial.loaded() == null) {
+            save(defaultValue, version);
+            publish(defaultValue);
+            return;
+        }
+        var value = acceptLoaded(initial.loaded());
+        rewriteIfChanged(initial.loaded(), version);
+        var previous = publish(value);
+        notifyChanged(previous, snapshot);
+    }
+
+    /**
+     * Stores the layers of a loaded config and gets the value to publish.
+     * If another layer changed while the file was being read, the layers are merged again.
+     * Must be called while holding {@link #lock}.
+     */
+    private D acceptLoaded(Loaded<D> loaded) {
+        var loadedLayers = loaded.layers();
+        if (loadedLayers == null) return loaded.value();
+
+        var current = layers;
+        if (loadedLayers.hasSameUpperLayers(current)) {
+            layers = loadedLayers;
+            return loaded.value();
+        }
+        var merged = current.withGlobal(loadedLayers.global());
+        var value = decodeLayers(merged);
+        layers = merged;
+        return value;
+    }
+
+    /**
+     * Changes the layers of the config and publishes the new value, unless nothing changed.
+     * @param update Creates the new layers. Called while holding {@link #lock}.
+     * @return Whether the layers changed.
+     * @throws RuntimeException If the new layers can't be decoded, in which case nothing changes.
+     */
+    private boolean updateLayers(UnaryOperator<ConfigLayers> update) {
+        return updateLayers(update, Runnable::run);
+    }
+
+    /**
+     * Like {@link #updateLayers(UnaryOperator)}, but notifies listeners on an executor.
+     */
+    private boolean updateLayers(UnaryOperator<ConfigLayers> update, Executor listenerExecutor) {
+        D previous;
+        Snapshot<D> published;
+        synchronized (lock) {
+            var current = layers;
+            var updated = update.apply(current);
+            if (updated == current) return false;
+            var value = canonicalize(decodeLayers(updated));
+            layers = updated;
+            previous = publish(value);
+            published = snapshot;
+        }
+        listenerExecutor.execute(() -> notifyChanged(previous, published));
+        return true;
+    }
+
+    /**
+     * Makes a reloaded value share unchanged parts with the current value, see {@link ValueCanonicalizer}.
+     * Must be called while holding {@link #lock}.
+     */
+    private D canonicalize(D value) {
+        var current = snapshot;
+        return current == null ? value : ValueCanonicalizer.canonicalize(value, current.value());
+    }
+
+    private D decodeLayers(ConfigLayers layers) {
+        return codec.parse(JsonOps.INSTANCE, layers.merged())
+                .mapError(error -> "Failed to load config %s: %s. Delete the file or invalid values to regenerate defaults.".formatted(id, error))
+                .getOrThrow(false, LOGGER::error);
+    }
+
+    private JsonObject encodeDefaults() {
+        var encoded = codec.encodeStart(JsonOps.INSTANCE, defaultValue).getOrThrow(false, LOGGER::error);
+        if (!(encoded instanceof JsonObject object)) {
+            throw new IllegalStateException("Layered config %s doesn't encode to a json object".formatted(id));
+        }
+        return object;
+    }
+
+    /**
+     * Reads the instance layer. Must be called while holding {@link #lock}.
+     */
+    private JsonObject readInstanceLayer() {
+        if (instanceFile == null || !Files.exists(instanceFile)) return new JsonObject();
+        try {
+            var json = GSON.fromJson(Files.readString(instanceFile), JsonObject.class);
+            return json == null ? new JsonObject() : json;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load instance config %s due to io error".formatted(id), e);
+        } catch (JsonSyntaxException e) {
+            throw new RuntimeException("Instance config %s has a syntax errors".formatted(id), e);
+        }
+    }
+
+    boolean isSynced() {
+        return settings.synced();
+    }
+
+    /**
+     * Gets the current value for syncing, reusing the cached snapshot if the value hasn't changed.
+     * The overlay and synced values aren't included, as the client in the same game instance as the server would send back its own values.
+     */
+    ConfigSyncImpl.SyncSnapshot syncSnapshot(@Nullable ConfigSyncImpl.SyncSnapshot cached) {
+        var current = disabled ? disabledSnapshot : currentSnapshot(); // Make sure the config is loaded
+        long version;
+        JsonObject json;
+        synchronized (lock) {
+            version = disabled ? current.version() : snapshot.version();
+            json = Objects.requireNonNull(layers).mergedInstance();
+        }
+        if (cached != null && cached.json() == json) {
+            return cached.version() == version ? cached : new ConfigSyncImpl.SyncSnapshot(version, json, cached.data());
+        }
+        return new ConfigSyncImpl.SyncSnapshot(version, json, BinaryConfigFormat.INSTANCE.write(json));
+    }
+
+    private void requireLayered() {
+        if (layers == null) {
+            throw new IllegalStateException("Config %s isn't layered".formatted(id));
+        }
+    }
+
+    /**
+     * Makes a new value visible. Threads with an open override keep seeing the override until they close it.
+     * Must be called while holding {@link #lock}.
+     */
+    @Nullable
+    private D publish(D value) {
+        var previous = snapshot;
+        snapshot = new Snapshot<>(value, ++lastVersion);
+        return previous == null ? null : previous.value();
+    }
+
+    /**
+     * Invokes the reload event and component listeners whose components changed, and schedules scheduled listeners.
+     * @param previous The value before the change, or {@code null} if the config was just loaded for the first time.
+     * @param published The snapshot published by the change. Scheduled listeners get its version, so they can skip it
+     * if a newer change was notified first.
+     */
+    private void notifyChanged(@Nullable D previous, Snapshot<D> published) {
+        var current = published.value();
+        if (settings.synced()) ConfigSyncImpl.onChanged(this);
+        for (var listener : scheduledListeners) {
+            listener.submit(current, published.version());
+        }
+        onChange.invoker().onChange(current);
+        if (componentListeners.isEmpty()) return;
+
+        // The first load counts as every component changing
+        Set<String> changed = previous == null ? null : Objects.requireNonNull(settings.differ()).changedComponents(previous, current);
+        var dispatch = new ListenerDispatch(id, "component listeners", stats);
+        try {
+            for (var listener : componentListeners) {
+                if (changed == null || listener.paths().stream().anyMatch(path -> isChanged(path, changed))) {
+                    dispatch.invoke(listener.callback(), current);
+                }
+            }
+        } finally {
+            dispatch.finish();
         }
     }
 
-    private void save() {
-        codec.encodeStart(JsonOps.INSTANCE, value)
+    /**
+     * Checks whether a component listener path is affected by a change.
+     * A changed parent without any changed paths inside it means the differ didn't compare its contents,
+     * like when it changed to or from {@code null}, so everything inside it counts as changed.
+     */
+    private static boolean isChanged(String path, Set<String> changed) {
+        if (changed.contains(path)) return true;
+        for (var dot = path.lastIndexOf('.'); dot != -1; dot = path.lastIndexOf('.', dot - 1)) {
+            var parent = path.substring(0, dot);
+            if (!changed.contains(parent)) continue;
+            var prefix = parent + ".";
+            return changed.stream().noneMatch(other -> other.startsWith(prefix));
+        }
+        return false;
+    }
+
+    /**
+     * Saves a value, unless a newer one has already been written.
+     * @param version The version the value was published with.
+     */
+    private void save(D config, long version) {
+        synchronized (fileLock) {
+            // Concurrent changes can get here out of order, an older value must never replace a newer one
+            if (version < writtenVersion) return;
+            writtenVersion = version;
+            save(config);
+        }
+    }
+
+    /**
+     * Must be called while holding {@link #fileLock}.
+     */
+    private void save(D config) {
+        var start = System.nanoTime();
+        var layers = this.layers;
+        if (layers != null) {
+            // The global layer was already updated when the config was set, so we only need to write it
+            write(serialize(layers.global()), start);
+            return;
+        }
+        if (codec instanceof JsonStreamCodec<D> streamCodec && settings.format() == ConfigFormat.JSON) {
+            write(streamCodec.toPrettyString(config).getBytes(StandardCharsets.UTF_8), start);
+            return;
+        }
+        codec.encodeStart(JsonOps.INSTANCE, config)
                 .resultOrPartial(LOGGER::error)
-                .ifPresent(this::write);
+                .map(this::serialize)
+                .ifPresent(data -> write(data, start));
     }
 
-    private void write(JsonElement data) {
-        try (var out = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
-            GSON.toJson(data, out);
+    private byte[] serialize(JsonElement json) {
+        if (settings.format() == ConfigFormat.JSON) return GSON.toJson(json).getBytes(StandardCharsets.UTF_8);
+        try {
+            return settings.format().write(json);
         } catch (IOException e) {
-            throw new UncheckedIOException("Failed to save power networks config", e);
+            throw new UncheckedIOException("Failed to save config %s in format %s".formatted(id, settings.format()), e);
         }
     }
 
-    private void load() {
-        try (var in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
-            var json = GSON.fromJson(in, JsonObject.class);
-            var result = codec.parse(JsonOps.INSTANCE, json);
+    /**
+     * Queues a save on the {@link AsyncConfigWriter}. If a save is already queued it will pick up the new value instead,
+     * so rapid changes only cause one write.
+     */
+    private void scheduleSave(D config, long version) {
+        synchronized (saveLock) {
+            var alreadyQueued = pendingSaveValue != null;
+            if (alreadyQueued && version < pendingSaveVersion) return;
+            pendingSaveValue = config;
+            pendingSaveVersion = version;
+            if (alreadyQueued) return;
 
-            value = result.mapError(error -> "Failed to load config %s: %s. Delete the file or invalid values to regenerate defaults.".formatted(id, error))
-                    .getOrThrow(false, LOGGER::error);
+            pendingSave = AsyncConfigWriter.submit(this::runScheduledSave)
+                    .whenComplete((unused, e) -> {
+                        if (e != null) LOGGER.error("Failed to save config {}", id, e);
+                    });
+        }
+    }
+
+    private void runScheduledSave() {
+        D config;
+        long version;
+        synchronized (saveLock) {
+            config = pendingSaveValue;
+            version = pendingSaveVersion;
+            pendingSaveValue = null;
+        }
+        save(config, version);
+    }
+
+    /**
+     * Writes the config {@link AtomicFiles atomically}.
+     * Skips writing if the file already has the exact same contents.
+     * @param encodeStart The {@link System#nanoTime()} when encoding of the data started, for stats.
+     */
+    private void write(byte[] bytes, long encodeStart) {
+        var event = new ConfigSaveEvent();
+        event.begin();
+        event.configId = id;
+        event.encodeDuration = System.nanoTime() - encodeStart;
+        event.bytes = bytes.length;
+        try {
+            event.written = writeFile(bytes);
+            event.success = true;
+        } finally {
+            stats.recordSave(System.nanoTime() - encodeStart, bytes.length, event.written, event.success);
+            event.commit();
+        }
+    }
+
+    /**
+     * @return {@code false} if writing was skipped because the file already has the same contents.
+     */
+    private boolean writeFile(byte[] bytes) {
+        var hash = FileStamp.hash(bytes);
+        try {
+            var known = knownFileStamp;
+            if (known != null && known.hash() == hash && Files.exists(path) && known.matchesAttributes(path)) return false;
+
+            AtomicFiles.write(path, bytes);
+            var stamp = FileStamp.of(path, hash);
+            knownFileStamp = stamp;
+            var cache = PackedConfigCache.get();
+            if (cache != null) cache.put(path, stamp.size(), stamp.lastModified(), ByteBuffer.wrap(bytes), hash);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save config %s".formatted(id), e);
+        }
+    }
+
+    /**
+     * @return Whether the file had changed.
+     */
+    private boolean load() {
+        var changedInstance = layers != null && updateLayers(layers -> layers.withInstance(readInstanceLayer()));
 
-            onChange.invoker().onChange(value);
+        var loaded = read(true);
+        if (loaded == null) return changedInstance; // Nothing changed since we last read or wrote the file
+        D previous;
+        Snapshot<D> published;
+        synchronized (lock) {
+            var value = canonicalize(acceptLoaded(loaded));
+            previous = publish(value);
+            published = snapshot;
+        }
+        notifyChanged(previous, published);
+        rewriteIfChanged(loaded, published.version());
+        return true;
+    }
+
+    /**
+     * Writes the config back to the file if encoding the loaded value doesn't produce the same json.
+     * This updates the file with new options and removes unknown ones.
+     * @param version The version the loaded value was published with. Nothing is written if a newer value was already saved.
+     */
+    private void rewriteIfChanged(Loaded<D> loaded, long version) {
+        // Layered files are sparse and rewriting would expand them
+        if (loaded.layers() != null) return;
+        synchronized (fileLock) {
+            if (version < writtenVersion) return;
+            writtenVersion = version;
+            rewrite(loaded);
+        }
+    }
+
+    private void rewrite(Loaded<D> loaded) {
+        var start = System.nanoTime();
+        if (loaded.json() == null && loaded.text() != null && codec instanceof JsonStreamCodec<D> streamCodec) {
+            // Compare trees rather than text, so that hand formatted files aren't rewritten just for their whitespace or key order.
+            // Only parsed here, loading itself still doesn't build a tree.
+            var encoded = streamCodec.toPrettyString(loaded.value());
+            if (!JsonParser.parseString(encoded).equals(GSON.fromJson(loaded.text(), JsonElement.class))) {
+                write(encoded.getBytes(StandardCharsets.UTF_8), start);
+            }
+            return;
+        }
+        codec.encodeStart(JsonOps.INSTANCE, loaded.value())
+                .resultOrPartial(LOGGER::error)
+                .filter(o -> !o.equals(loaded.json())) // Don't save if no changes in json
+                .map(this::serialize)
+                .ifPresent(data -> write(data, start));
+    }
+
+    /**
+     * Reads and decodes the config file without touching the current value.
+     * @param skipUnchanged If {@code true} and the file is the same as when we last successfully read or wrote it, nothing is parsed.
+     * @return The loaded config, or {@code null} if skipped.
+     */
+    @Nullable
+    private Loaded<D> read(boolean skipUnchanged) {
+        var event = new ConfigLoadEvent();
+        event.begin();
+        event.configId = id;
+        var start = System.nanoTime();
+        try {
+            var loaded = readFile(skipUnchanged, event);
+            event.skipped = loaded == null;
+            event.success = true;
+            return loaded;
+        } finally {
+            stats.recordLoad(System.nanoTime() - start, event.bytes, event.skipped, event.success);
+            event.commit();
+        }
+    }
 
-            codec.encodeStart(JsonOps.INSTANCE, value)
-                    .resultOrPartial(LOGGER::error)
-                    .filter(o -> !json.equals(o)) // Don't save if no changes in json
-                    .ifPresent(this::write);
+    @Nullable
+    private Loaded<D> readFile(boolean skipUnchanged, ConfigLoadEvent event) {
+        try {
+            var start = System.nanoTime();
+            var known = knownFileStamp;
+            if (skipUnchanged && known != null && known.matchesAttributes(path)) return null;
+
+            // Stat before reading, so that a change during reading leaves us with an outdated stamp instead of missing the change
+            var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            var format = settings.format();
+            var cache = PackedConfigCache.get();
+            var cached = cache == null ? null : cache.lookup(path, attributes);
+            // Never memory mapped, as an open mapping prevents replacing the file on Windows until it is garbage collected
+            var data = cached != null ? cached.data() : ByteBuffer.wrap(Files.readAllBytes(path));
+            var readEnd = System.nanoTime();
+            event.bytes = data.remaining();
+            event.readDuration = readEnd - start;
+            var stamp = new FileStamp(attributes.size(), attributes.lastModifiedTime(), cached != null ? cached.hash() : FileStamp.hash(data));
+            if (cache != null && cached == null) cache.put(path, stamp.size(), stamp.lastModified(), data, stamp.hash());
+            if (skipUnchanged && known != null && known.hash() == stamp.hash() && known.size() == data.remaining()) {
+                // Only touched, the contents are the same
+                knownFileStamp = stamp;
+                return null;
+            }
+
+            var layers = this.layers;
+            String text = null;
+            JsonObject json;
+            if (format == ConfigFormat.JSON) {
+                text = new String(data.array(), data.arrayOffset() + data.position(), data.remaining(), StandardCharsets.UTF_8);
+                if (codec instanceof JsonStreamCodec<D> streamCodec && layers == null) {
+                    var value = readStreaming(streamCodec, text);
+                    event.decodeDuration = System.nanoTime() - readEnd;
+                    knownFileStamp = stamp;
+                    return new Loaded<>(text, null, value, null);
+                }
+                json = GSON.fromJson(text, JsonObject.class);
+            } else {
+                if (!(format.read(data) instanceof JsonObject object)) {
+                    throw new RuntimeException("Config %s isn't a map".formatted(id));
+                }
+                json = object;
+            }
+            var parseEnd = System.nanoTime();
+            event.parseDuration = parseEnd - readEnd;
+            // Layered configs decode the merged layers instead of just the file
+            var resolved = layers == null ? null : layers.withGlobal(json == null ? new JsonObject() : json);
+            var result = codec.parse(JsonOps.INSTANCE, resolved == null ? json : resolved.merged());
+
+            var value = result.mapError(error -> "Failed to load config %s: %s. Delete the file or invalid values to regenerate defaults.".formatted(id, error))
+                    .getOrThrow(false, LOGGER::error);
+            event.decodeDuration = System.nanoTime() - parseEnd;
+            // Only remember the file once it loads successfully, so that reloading a broken file reports the error again
+            knownFileStamp = stamp;
+            return new Loaded<>(text, json, value, resolved);
         } catch (IOException e) {
             throw new UncheckedIOException("Failed to load config %s due to io error".formatted(id), e);
         } catch (JsonSyntaxException e) {
             throw new RuntimeException("Config %s has a syntax errors".formatted(id), e);
         }
     }
+
+    /**
+     * Decodes the config directly from text, without building a json tree.
+     */
+    private D readStreaming(JsonStreamCodec<D> streamCodec, String text) throws IOException {
+        var reader = new JsonReader(new StringReader(text));
+        reader.setLenient(true); // Gson.fromJson is lenient as well
+        try {
+            return streamCodec.read(reader);
+        } catch (MalformedJsonException | EOFException | IllegalStateException e) {
+            throw new RuntimeException("Config %s has a syntax errors".formatted(id), e);
+        } catch (JsonParseException e) {
+            var message = "Failed to load config %s: %s. Delete the file or invalid values to regenerate defaults.".formatted(id, e.getMessage());
+            LOGGER.error(message);
+            throw new RuntimeException(message, e);
+        }
+    }
+
+    /**
+     * Called on the watcher thread when the config file was changed.
+     * Unlike normal reloads this doesn't rewrite the file, as that would interfere with people editing it.
+     */
+    private void onFileChanged() {
+        // Not loaded yet, the change will be picked up by the initial load
+        if (snapshot == null) return;
+
+        if (!Files.exists(path)) return; // Deleted, keep the current value
+
+        var executor = settings.watchExecutor();
+        var event = new ConfigReloadEvent();
+        event.begin();
+        event.configId = id;
+        event.trigger = "file watcher";
+        Loaded<D> loaded;
+        try {
+            loaded = read(true);
+            if (loaded == null) return; // Our own write or no actual change
+            event.changed = true;
+            stats.recordReload();
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to reload edited config {}", id, e);
+            event.error = e.getMessage();
+            stats.recordReload();
+            var errorHandler = settings.watchErrorHandler();
+            if (errorHandler != null) executor.execute(() -> errorHandler.accept(e));
+            return;
+        } finally {
+            // Listeners run later on the executor, so they aren't part of this event
+            event.commit();
+        }
+
+        D previous;
+        Snapshot<D> published;
+        synchronized (lock) {
+            var value = canonicalize(acceptLoaded(loaded));
+            previous = publish(value);
+            published = snapshot;
+        }
+        LOGGER.info("Reloaded config {} after the file was edited", id);
+        executor.execute(() -> notifyChanged(previous, published));
+    }
+
+    /**
+     * Called on the watcher thread when the instance file was changed. Like {@link #onFileChanged()}, but only rereads the instance layer.
+     */
+    private void onInstanceFileChanged() {
+        if (snapshot == null || layers == null) return;
+
+        var executor = settings.watchExecutor();
+        var event = new ConfigReloadEvent();
+        event.begin();
+        event.configId = id;
+        event.trigger = "instance file watcher";
+        try {
+            event.changed = updateLayers(layers -> layers.withInstance(readInstanceLayer()), executor);
+            if (event.changed) LOGGER.info("Reloaded config {} after the instance file was edited", id);
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to reload edited instance config {}", id, e);
+            event.error = e.getMessage();
+            var errorHandler = settings.watchErrorHandler();
+            if (errorHandler != null) executor.execute(() -> errorHandler.accept(e));
+        } finally {
+            stats.recordReload();
+            event.commit();
+        }
+    }
+
+    private record Snapshot<D>(D value, long version) {
+    }
+
+    /**
+     * @param text The contents of the file, if it is json.
+     * @param json The parsed json, unless the config uses a {@link JsonStreamCodec}.
+     * @param value The decoded config.
+     * @param layers The layers including the loaded file, if the config is layered.
+     */
+    private record Loaded<D>(@Nullable String text, @Nullable JsonElement json, D value, @Nullable ConfigLayers layers) {
+    }
+
+    /**
+     * @param loaded The loaded file, or {@code null} if it didn't exist and the default value was saved.
+     */
+    private record InitialLoad<D>(@Nullable Loaded<D> loaded) {
+    }
+
+    private record ComponentListener<D>(Set<String> paths, OnLoadCallback<D> callback) {
+    }
+
+    /**
+     * What we know about the config file from our last successful read or write.
+     * Checking the size and modification time is enough to skip most unchanged files with a single stat call,
+     * while the hash catches files that were touched or rewritten with the same contents.
+     */
+    private record FileStamp(long size, FileTime lastModified, long hash) {
+        private static FileStamp of(Path path, long hash) throws IOException {
+            var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new FileStamp(attributes.size(), attributes.lastModifiedTime(), hash);
+        }
+
+        private static long hash(byte[] bytes) {
+            var crc = new CRC32C();
+            crc.update(bytes);
+            return crc.getValue();
+        }
+
+        private static long hash(ByteBuffer data) {
+            var crc = new CRC32C();
+            crc.update(data.duplicate());
+            return crc.getValue();
+        }
+
+        private boolean matchesAttributes(Path path) throws IOException {
+            var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return attributes.size() == size && attributes.lastModifiedTime().equals(lastModified);
+        }
+    }
+
+    private record DerivedSnapshot<D, R>(Snapshot<D> source, R value) {
+    }
+
+    /**
+     * An open override on a thread. Links to the override it is nested in.
+     */
+    private class OverrideFrame implements OverrideCloser {
+        private final Snapshot<D> snapshot;
+        @Nullable
+        private final OverrideFrame parent;
+        private final Thread thread = Thread.currentThread();
+        /**
+         * Derived values computed while this override was visible. Only accessed from the owning thread.
+         */
+        private final Map<DerivedValue<?>, Object> derived = new IdentityHashMap<>();
+        private boolean closed = false;
+
+        private OverrideFrame(Snapshot<D> snapshot, @Nullable OverrideFrame parent) {
+            this.snapshot = snapshot;
+            this.parent = parent;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <R> R derive(DerivedValue<R> value) {
+            if (derived.containsKey(value)) return (R) derived.get(value);
+            R result = value.function.apply(snapshot.value());
+            derived.put(value, result);
+            return result;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            if (thread != Thread.currentThread()) {
+                throw new IllegalStateException("Override of config %s closed on thread %s, but was opened on %s".formatted(id, Thread.currentThread().getName(), thread.getName()));
+            }
+            if (overrides.get() != this) {
+                throw new IllegalStateException("Override of config %s closed before an override nested in it".formatted(id));
+            }
+            closed = true;
+            if (parent == null) {
+                overrides.remove();
+            } else {
+                overrides.set(parent);
+            }
+            activeOverrides.decrementAndGet();
+        }
+    }
+
+    /**
+     * Caches the result of a function for one snapshot at a time. Because the cache is keyed on the snapshot instance,
+     * a reader can never get a value computed from a different snapshot than the one it would see in {@link #get()}.
+     */
+    private class DerivedValue<R> implements Supplier<R> {
+        private final Function<? super D, ? extends R> function;
+        private volatile DerivedSnapshot<D, R> cached = null;
+
+        private DerivedValue(Function<? super D, ? extends R> function) {
+            this.function = function;
+        }
+
+        @Override
+        public R get() {
+            if (disabled) return compute(disabledSnapshot);
+            // Overrides cache their own derived values, so that they don't evict the ones of other threads
+            var override = currentOverride();
+            if (override != null) return override.derive(this);
+            return compute(currentSnapshot());
+        }
+
+        private R compute(Snapshot<D> source) {
+            var current = cached;
+            if (current != null && current.source() == source) return current.value();
+
+            synchronized (this) {
+                current = cached;
+                if (current != null && current.source() == source) return current.value();
+
+                R value = function.apply(source.value());
+                cached = new DerivedSnapshot<>(source, value);
+                return value;
+            }
+        }
+    }
 }
@@ -0,0 +1,94 @@
+package io.github.mattidragon.configloader.impl;
+
+import io.github.mattidragon.configloader.api.ConfigManager;
+import io.github.mattidragon.configloader.api.PreloadReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class ConfigRegistryImpl {
+    private static final Logger LOGGER = LoggerFactory.getLogger("ConfigLoader/ConfigRegistryImpl");
+    private static final List<ConfigManagerImpl<?>> MANAGERS = new CopyOnWriteArrayList<>();
+
+    private ConfigRegistryImpl() {
+    }
+
+    static void register(ConfigManagerImpl<?> manager) {
+        MANAGERS.add(manager);
+    }
+
+    public static List<ConfigManager<?>> getAll() {
+        return Collections.unmodifiableList(MANAGERS);
+    }
+
+    static List<ConfigManagerImpl<?>> managers() {
+        return Collections.unmodifiableList(MANAGERS);
+    }
+
+    /**
+     * Loads all configs that haven't been loaded yet. Reading and decoding happens in parallel,
+     * but the loaded values are published and reload listeners invoked on the calling thread, one config at a time.
+     */
+    public static PreloadReport preloadAll(int parallelism) {
+        var start = System.nanoTime();
+        var managers = List.copyOf(MANAGERS);
+        var threadCounter = new AtomicInteger();
+        var executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            var thread = new Thread(runnable, "ConfigToolkit Preload #" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            var tasks = new ArrayList<CompletableFuture<TimedLoad>>(managers.size());
+            for (var manager : managers) {
+                tasks.add(CompletableFuture.supplyAsync(() -> {
+                    var taskStart = System.nanoTime();
+                    var finisher = manager.preload();
+                    return new TimedLoad(finisher, System.nanoTime() - taskStart);
+                }, executor));
+            }
+
+            var entries = new ArrayList<PreloadReport.Entry>(managers.size());
+            for (int i = 0; i < managers.size(); i++) {
+                var manager = managers.get(i);
+                try {
+                    var load = tasks.get(i).join();
+                    // Configs that were already loaded only checked that, which isn't counted as loading
+                    var time = 0L;
+                    if (load.finisher() != null) {
+                        var finishStart = System.nanoTime();
+                        load.finisher().run();
+                        time = load.nanos() + System.nanoTime() - finishStart;
+                    }
+                    entries.add(new PreloadReport.Entry(manager.getId(), Duration.ofNanos(time), Optional.empty()));
+                } catch (RuntimeException e) {
+                    // Failed configs stay unloaded, so that the error is thrown again when someone gets the config, just like without preloading
+                    var cause = e.getCause() instanceof RuntimeException runtimeCause ? runtimeCause : e;
+                    LOGGER.error("Failed to preload config {}", manager.getId(), cause);
+                    entries.add(new PreloadReport.Entry(manager.getId(), Duration.ZERO, Optional.of(cause)));
+                }
+            }
+            return new PreloadReport(List.copyOf(entries), Duration.ofNanos(System.nanoTime() - start));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public static void enablePackedCache(Path file) {
+        PackedConfigCache.enable(file);
+    }
+
+    private record TimedLoad(Runnable finisher, long nanos) {
+    }
+}
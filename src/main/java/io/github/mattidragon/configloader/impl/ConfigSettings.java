@@ -0,0 +1,33 @@
+package io.github.mattidragon.configloader.impl;
+
+import io.github.mattidragon.configloader.api.ConfigDiffer;
+import io.github.mattidragon.configloader.api.ConfigFormat;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Optional behaviour of a {@link ConfigManagerImpl}, as configured through {@link io.github.mattidragon.configloader.api.ConfigManagerBuilder}.
+ * @param asyncSave Whether {@link ConfigManagerImpl#set} hands saving off to the {@link AsyncConfigWriter}.
+ * @param watchExecutor If not {@code null}, the config file is watched for changes and listeners of reloads caused by it run on this executor.
+ * @param watchErrorHandler Receives errors from reloads caused by file changes. Runs on the {@code watchExecutor}.
+ * @param differ Finds changed components for component listeners. If {@code null} component listeners aren't supported.
+ * @param directory The directory of the config file. If {@code null} the game config directory is used.
+ * @param layered Whether the config file is sparse and merged with other layers, see {@link ConfigLayers}.
+ * @param format The format of the config file.
+ * @param synced Whether the config is sent from servers to clients by {@link ConfigSyncImpl}. Synced configs are always layered.
+ */
+public record ConfigSettings<D>(boolean asyncSave,
+                                @Nullable Executor watchExecutor,
+                                @Nullable Consumer<RuntimeException> watchErrorHandler,
+                                @Nullable ConfigDiffer<D> differ,
+                                @Nullable Path directory,
+                                boolean layered,
+                                ConfigFormat format,
+                                boolean synced) {
+    public static <D> ConfigSettings<D> defaultSettings() {
+        return new ConfigSettings<>(false, null, null, null, null, false, ConfigFormat.JSON, false);
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.mattidragon.configloader.impl;
+
+import io.github.mattidragon.configloader.api.ConfigStats;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the data for {@link ConfigStats}. Recording is lock free apart from when a new slowest listener is found.
+ */
+final class ConfigStatsRecorder {
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder skippedLoads = new LongAdder();
+    private final LongAdder failedLoads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final AtomicLong maxLoadNanos = new AtomicLong();
+    private final AtomicLong lastFileSize = new AtomicLong();
+    private final LongAdder saves = new LongAdder();
+    private final LongAdder skippedSaves = new LongAdder();
+    private final LongAdder failedSaves = new LongAdder();
+    private final LongAdder saveNanos = new LongAdder();
+    private final AtomicLong maxSaveNanos = new AtomicLong();
+    private final LongAdder reloads = new LongAdder();
+    private final LongAdder listenerDispatches = new LongAdder();
+    private final LongAdder listenerNanos = new LongAdder();
+    private final AtomicLong maxListenerNanos = new AtomicLong();
+    private volatile String slowestListener = null;
+
+    void recordLoad(long nanos, long bytes, boolean skipped, boolean success) {
+        loads.increment();
+        if (skipped) skippedLoads.increment();
+        if (!success) failedLoads.increment();
+        loadNanos.add(nanos);
+        maxLoadNanos.accumulateAndGet(nanos, Math::max);
+        if (success && !skipped) lastFileSize.set(bytes);
+    }
+
+    void recordSave(long nanos, long bytes, boolean written, boolean success) {
+        saves.increment();
+        if (!success) {
+            failedSaves.increment();
+        } else if (!written) {
+            skippedSaves.increment();
+        }
+        saveNanos.add(nanos);
+        maxSaveNanos.accumulateAndGet(nanos, Math::max);
+        if (success) lastFileSize.set(bytes);
+    }
+
+    void recordReload() {
+        reloads.increment();
+    }
+
+    void recordDispatch(long nanos) {
+        listenerDispatches.increment();
+        listenerNanos.add(nanos);
+    }
+
+    void recordListener(Class<?> listener, long nanos) {
+        if (nanos <= maxListenerNanos.get()) return;
+        synchronized (this) {
+            if (nanos <= maxListenerNanos.get()) return;
+            maxListenerNanos.set(nanos);
+            slowestListener = listener.getName();
+        }
+    }
+
+    ConfigStats snapshot() {
+        return new ConfigStats(
+                loads.sum(),
+                skippedLoads.sum(),
+                failedLoads.sum(),
+                Duration.ofNanos(loadNanos.sum()),
+                Duration.ofNanos(maxLoadNanos.get()),
+                lastFileSize.get(),
+                saves.sum(),
+                skippedSaves.sum(),
+                failedSaves.sum(),
+                Duration.ofNanos(saveNanos.sum()),
+                Duration.ofNanos(maxSaveNanos.get()),
+                reloads.sum(),
+                listenerDispatches.sum(),
+                Duration.ofNanos(listenerNanos.sum()),
+                Duration.ofNanos(maxListenerNanos.get()),
+                slowestListener);
+    }
+}
@@ -0,0 +1,308 @@
+package io.github.mattidragon.configloader.impl;
+
+import com.google.gson.JsonObject;
+import io.github.mattidragon.configloader.api.ConfigSyncChannel;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Sends synced configs from servers to clients.
+ * <p>
+ * Payloads are deflate compressed and start with the magic {@code CTKS}, a version byte, a type byte and the number of entries.
+ * Full entries contain the id, version and {@link BinaryConfigFormat binary} encoding of a config.
+ * Delta entries contain the id, the version the delta is based on, the new version and the binary encoding of a {@link ConfigDelta}.
+ * <p>
+ * The server side is guarded by {@link #LOCK} and the client side by {@link #RECEIVE_LOCK}.
+ * Neither is acquired while holding the lock of a config manager, except for {@link #LOCK} when a config loads for the first time,
+ * so the server side never waits on a manager that isn't loaded while holding it.
+ */
+public final class ConfigSyncImpl {
+    private static final Logger LOGGER = LoggerFactory.getLogger("ConfigLoader/ConfigSyncImpl");
+    private static final int MAGIC = 0x43544B53; // CTKS
+    private static final byte VERSION = 1;
+    private static final byte FULL = 0;
+    private static final byte DELTA = 1;
+    /**
+     * The largest size of a payload after inflating it. Larger payloads are rejected instead of being read into memory.
+     */
+    private static final int MAX_PAYLOAD_SIZE = 16 * 1024 * 1024;
+
+    private static final Object LOCK = new Object();
+    private static final List<ConfigSyncChannel> CHANNELS = new CopyOnWriteArrayList<>();
+    /**
+     * The snapshots that all connected clients have, which deltas are based on. Guarded by {@link #LOCK}.
+     */
+    private static final Map<ConfigManagerImpl<?>, SyncSnapshot> SENT = new IdentityHashMap<>();
+    /**
+     * The latest encoded snapshot of each synced config, reused until the config changes.
+     */
+    private static final Map<ConfigManagerImpl<?>, SyncSnapshot> SNAPSHOTS = new ConcurrentHashMap<>();
+    /**
+     * The last login payload, reused while no config changes. Guarded by {@link #LOCK}.
+     */
+    @Nullable
+    private static LoginPayload loginPayload = null;
+
+    private static final Object RECEIVE_LOCK = new Object();
+    /**
+     * The configs received from the server, by id. Guarded by {@link #RECEIVE_LOCK}.
+     */
+    private static final Map<String, SyncSnapshot> RECEIVED = new HashMap<>();
+
+    private ConfigSyncImpl() {
+    }
+
+    public static void connect(ConfigSyncChannel channel) {
+        var managers = syncedManagers();
+        // Encode outside the lock, which also makes sure all configs are loaded
+        var snapshots = managers.stream().map(ConfigSyncImpl::snapshot).toList();
+
+        synchronized (LOCK) {
+            // Bring existing clients up to date first, so that every client has the same snapshots afterwards
+            var current = new ArrayList<SyncSnapshot>(managers.size());
+            for (int i = 0; i < managers.size(); i++) {
+                var manager = managers.get(i);
+                sendUpdate(manager, snapshots.get(i));
+                // The existing clients might have a newer version, which the new one has to share for deltas to apply
+                current.add(SENT.get(manager));
+            }
+
+            var versions = current.stream().mapToLong(SyncSnapshot::version).toArray();
+            var login = loginPayload;
+            if (login == null || !login.managers().equals(managers) || !Arrays.equals(login.versions(), versions)) {
+                login = new LoginPayload(managers, versions, writeFull(managers, current));
+                loginPayload = login;
+            }
+            CHANNELS.add(channel);
+            send(channel, login.data());
+        }
+    }
+
+    public static void disconnect(ConfigSyncChannel channel) {
+        synchronized (LOCK) {
+            CHANNELS.remove(channel);
+            if (CHANNELS.isEmpty()) {
+                SENT.clear();
+                loginPayload = null;
+            }
+        }
+    }
+
+    /**
+     * Sends the changes of a synced config to connected clients. Called whenever the value of the config changes.
+     */
+    static void onChanged(ConfigManagerImpl<?> manager) {
+        if (CHANNELS.isEmpty()) return;
+        var snapshot = snapshot(manager);
+        synchronized (LOCK) {
+            if (CHANNELS.isEmpty()) return;
+            sendUpdate(manager, snapshot);
+        }
+    }
+
+    /**
+     * Sends a delta to connected clients if the snapshot is newer than what they have. Must be called while holding {@link #LOCK}.
+     */
+    private static void sendUpdate(ConfigManagerImpl<?> manager, SyncSnapshot snapshot) {
+        var sent = SENT.get(manager);
+        if (sent != null && sent.version() >= snapshot.version()) return;
+        var delta = sent == null ? null : ConfigDelta.diff(sent.json(), snapshot.json());
+        // Clients only know the versions they were sent, so versions without changes must not become the base of the next delta
+        if (sent != null && delta == null) return;
+        SENT.put(manager, snapshot);
+        if (CHANNELS.isEmpty()) return;
+
+        byte[] payload;
+        if (sent == null) {
+            // Configs created after clients connected are sent in full
+            payload = writeFull(List.of(manager), List.of(snapshot));
+        } else {
+            payload = writeDelta(manager.getId(), sent.version(), snapshot.version(), BinaryConfigFormat.INSTANCE.write(delta));
+        }
+        for (var channel : CHANNELS) {
+            send(channel, payload);
+        }
+    }
+
+    private static void send(ConfigSyncChannel channel, byte[] payload) {
+        try {
+            channel.send(payload);
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to send synced configs through {}", channel, e);
+        }
+    }
+
+    private static SyncSnapshot snapshot(ConfigManagerImpl<?> manager) {
+        // Not using compute, as encoding can load the config, which calls back into onChanged
+        var cached = SNAPSHOTS.get(manager);
+        var snapshot = manager.syncSnapshot(cached);
+        if (snapshot != cached) SNAPSHOTS.put(manager, snapshot);
+        return snapshot;
+    }
+
+    private static List<ConfigManagerImpl<?>> syncedManagers() {
+        return ConfigRegistryImpl.managers().stream().filter(ConfigManagerImpl::isSynced).toList();
+    }
+
+    public static void receive(byte[] payload) throws IOException {
+        synchronized (RECEIVE_LOCK) {
+            // Read everything before applying anything, so that malformed payloads don't leave configs half updated
+            var received = new ArrayList<Map.Entry<String, SyncSnapshot>>();
+            try (var in = new DataInputStream(new ByteArrayInputStream(inflate(payload)))) {
+                if (in.readInt() != MAGIC) throw new IOException("Not a config sync payload");
+                var version = in.readByte();
+                if (version != VERSION) throw new IOException("Unsupported config sync version " + version);
+                var type = in.readByte();
+                var count = in.readInt();
+                // Every entry takes more than one byte, so this also rejects counts that are too large
+                if (count < 0 || count > in.available()) throw new IOException("Invalid entry count in config sync payload");
+                var pending = new HashMap<String, SyncSnapshot>();
+                for (int i = 0; i < count; i++) {
+                    var id = in.readUTF();
+                    var base = type == DELTA ? in.readLong() : 0;
+                    var configVersion = in.readLong();
+                    var json = readJson(in);
+
+                    if (type == DELTA) {
+                        var previous = pending.containsKey(id) ? pending.get(id) : RECEIVED.get(id);
+                        if (previous == null || previous.version() != base) {
+                            throw new IOException("Config %s is out of sync, expected version %s but have %s"
+                                    .formatted(id, base, previous == null ? "none" : previous.version()));
+                        }
+                        try {
+                            json = ConfigDelta.apply(previous.json(), json);
+                        } catch (IllegalArgumentException e) {
+                            throw new IOException("Malformed delta for config " + id, e);
+                        }
+                    } else if (type != FULL) {
+                        throw new IOException("Unknown config sync payload type " + type);
+                    }
+                    var snapshot = new SyncSnapshot(configVersion, json, null);
+                    pending.put(id, snapshot);
+                    received.add(Map.entry(id, snapshot));
+                }
+                if (in.available() != 0) throw new IOException("Trailing data after config sync payload");
+            } catch (RuntimeException e) {
+                // Disconnect cleanly instead of crashing on anything unexpected in malformed payloads
+                throw new IOException("Malformed config sync payload", e);
+            }
+
+            for (var entry : received) {
+                RECEIVED.put(entry.getKey(), entry.getValue());
+                apply(entry.getKey(), entry.getValue().json());
+            }
+        }
+    }
+
+    public static void reset() {
+        synchronized (RECEIVE_LOCK) {
+            for (var id : RECEIVED.keySet()) {
+                apply(id, null);
+            }
+            RECEIVED.clear();
+        }
+    }
+
+    private static void apply(String id, @Nullable JsonObject json) {
+        var manager = syncedManagers().stream().filter(candidate -> candidate.getId().equals(id)).findFirst();
+        if (manager.isEmpty()) {
+            LOGGER.warn("Received unknown synced config {}", id);
+            return;
+        }
+        try {
+            manager.get().setSyncLayer(json);
+        } catch (RuntimeException e) {
+            // The layers are unchanged if they fail to decode, so the config keeps working with the previous values
+            LOGGER.error("Failed to apply synced config {}", id, e);
+        }
+    }
+
+    private static byte[] inflate(byte[] payload) throws IOException {
+        try (var in = new InflaterInputStream(new ByteArrayInputStream(payload))) {
+            var data = in.readNBytes(MAX_PAYLOAD_SIZE + 1);
+            if (data.length > MAX_PAYLOAD_SIZE) throw new IOException("Config sync payload is larger than " + MAX_PAYLOAD_SIZE + " bytes");
+            return data;
+        }
+    }
+
+    private static JsonObject readJson(DataInputStream in) throws IOException {
+        var length = in.readInt();
+        if (length < 0 || length > in.available()) throw new IOException("Invalid length in config sync payload");
+        var data = in.readNBytes(length);
+        if (!(BinaryConfigFormat.INSTANCE.read(ByteBuffer.wrap(data)) instanceof JsonObject object)) {
+            throw new IOException("Synced config isn't an object");
+        }
+        return object;
+    }
+
+    private static byte[] writeFull(List<ConfigManagerImpl<?>> managers, List<SyncSnapshot> snapshots) {
+        return writePayload(FULL, managers.size(), out -> {
+            for (int i = 0; i < managers.size(); i++) {
+                var snapshot = snapshots.get(i);
+                out.writeUTF(managers.get(i).getId());
+                out.writeLong(snapshot.version());
+                out.writeInt(snapshot.data().length);
+                out.write(snapshot.data());
+            }
+        });
+    }
+
+    private static byte[] writeDelta(String id, long base, long version, byte[] delta) {
+        return writePayload(DELTA, 1, out -> {
+            out.writeUTF(id);
+            out.writeLong(base);
+            out.writeLong(version);
+            out.writeInt(delta.length);
+            out.write(delta);
+        });
+    }
+
+    private static byte[] writePayload(byte type, int count, EntryWriter entries) {
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(type);
+            out.writeInt(count);
+            entries.write(out);
+        } catch (IOException e) {
+            // Can't happen with in memory streams
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @FunctionalInterface
+    private interface EntryWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * An encoded value of a synced config.
+     * @param data The binary encoding of the json, or {@code null} for received configs, where it isn't needed.
+     */
+    record SyncSnapshot(long version, JsonObject json, byte @Nullable [] data) {
+    }
+
+    private record LoginPayload(List<ConfigManagerImpl<?>> managers, long[] versions, byte[] data) {
+    }
+}
@@ -0,0 +1,46 @@
+package io.github.mattidragon.configloader.impl;
+
+import com.google.gson.*;
+import io.github.mattidragon.configloader.api.ConfigFormat;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The default json format. Config managers special case this format to support streaming codecs,
+ * so this is only used directly when converting between formats.
+ */
+public final class JsonConfigFormat implements ConfigFormat {
+    public static final JsonConfigFormat INSTANCE = new JsonConfigFormat();
+    static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+    private JsonConfigFormat() {
+    }
+
+    @Override
+    public @NotNull String extension() {
+        return "json";
+    }
+
+    @Override
+    public @NotNull JsonElement read(@NotNull ByteBuffer data) throws IOException {
+        try {
+            var json = GSON.fromJson(StandardCharsets.UTF_8.decode(data).toString(), JsonElement.class);
+            return json == null ? JsonNull.INSTANCE : json;
+        } catch (JsonParseException e) {
+            throw new IOException("Malformed json", e);
+        }
+    }
+
+    @Override
+    public byte @NotNull [] write(@NotNull JsonElement data) {
+        return GSON.toJson(data).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return "JsonConfigFormat";
+    }
+}
@@ -0,0 +1,54 @@
+package io.github.mattidragon.configloader.impl;
+
+import io.github.mattidragon.configloader.api.ConfigManager;
+import io.github.mattidragon.configloader.impl.jfr.ConfigListenerDispatchEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Times the listeners invoked for a single change of a config, reporting to the stats and a JFR event.
+ * Exceptions from listeners are logged, so that one failing listener doesn't prevent the others from running.
+ */
+final class ListenerDispatch {
+    private static final Logger LOGGER = LoggerFactory.getLogger("ConfigLoader/ListenerDispatch");
+
+    private final String configId;
+    private final ConfigStatsRecorder stats;
+    private final ConfigListenerDispatchEvent event = new ConfigListenerDispatchEvent();
+    private final long start;
+    private long slowestNanos = -1;
+
+    ListenerDispatch(String configId, String kind, ConfigStatsRecorder stats) {
+        this.configId = configId;
+        this.stats = stats;
+        event.configId = configId;
+        event.kind = kind;
+        event.begin();
+        start = System.nanoTime();
+    }
+
+    <D> void invoke(ConfigManager.OnLoadCallback<D> listener, D config) {
+        var listenerStart = System.nanoTime();
+        try {
+            listener.onChange(config);
+        } catch (RuntimeException e) {
+            LOGGER.error("Listener {} of config {} failed", listener.getClass().getName(), configId, e);
+        } finally {
+            var nanos = System.nanoTime() - listenerStart;
+            event.listenerCount++;
+            stats.recordListener(listener.getClass(), nanos);
+            if (nanos > slowestNanos) {
+                slowestNanos = nanos;
+                event.slowestListener = listener.getClass();
+                event.slowestListenerDuration = nanos;
+            }
+        }
+    }
+
+    void finish() {
+        // Changes without any listeners to run aren't dispatches
+        if (event.listenerCount == 0) return;
+        stats.recordDispatch(System.nanoTime() - start);
+        event.commit();
+    }
+}
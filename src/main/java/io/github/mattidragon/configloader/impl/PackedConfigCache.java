@@ -0,0 +1,321 @@
+package io.github.mattidragon.configloader.impl;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32C;
+
+/**
+ * A copy of all config files packed into a single file, so that startup reads one file instead of one per config.
+ * Each entry stores the size, modification time and hash of the file it was copied from and is only used
+ * while the file still has the same size and modification time. Otherwise the file itself is read and the entry replaced.
+ * <p>
+ * The cache file starts with the magic {@code CTKC}, a version byte and the number of entries, followed by an index
+ * with the path, size, modification time, hash, offset and length of each entry and finally the contents of all entries.
+ * The whole file is read at once when the cache is enabled. Changes to the cache file are written in batches, shortly after configs are read or saved,
+ * and a last time by {@link AsyncConfigWriter} at shutdown, after pending saves are done.
+ * Only the cache file is batched. Config files stay the source of truth and are written whenever they are saved,
+ * as delaying them would lose changes when the game crashes.
+ * <p>
+ * The contents of an entry are only kept in memory until they are looked up or written to the cache file.
+ * Afterwards the entry only remembers where it is stored, and writing the cache copies it from the previous cache file.
+ * Entries that no config used are dropped at shutdown, so the cache doesn't keep files of removed mods.
+ */
+final class PackedConfigCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger("ConfigLoader/PackedConfigCache");
+    private static final int MAGIC = 0x43544B43; // CTKC
+    private static final byte VERSION = 1;
+    /**
+     * How long to wait for more changes before writing the cache.
+     */
+    private static final long FLUSH_DELAY_MILLIS = 2000;
+
+    @Nullable
+    private static volatile PackedConfigCache instance = null;
+
+    private final Path file;
+    private final Map<String, Entry> entries;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Object writeLock = new Object();
+
+    private PackedConfigCache(Path file, Map<String, Entry> entries) {
+        this.file = file;
+        this.entries = entries;
+    }
+
+    static synchronized void enable(Path file) {
+        if (instance != null) {
+            if (!instance.file.equals(file)) throw new IllegalStateException("Packed config cache is already enabled at " + instance.file);
+            return;
+        }
+        var cache = new PackedConfigCache(file, read(file));
+        // Delayed flushes may not run anymore once the game exits, the writer flushes the cache when it shuts down
+        AsyncConfigWriter.ensureShutdownHook();
+        instance = cache;
+    }
+
+    @Nullable
+    static PackedConfigCache get() {
+        return instance;
+    }
+
+    /**
+     * Gets the cached contents of a config file, if they are still up to date. The contents are released afterwards,
+     * so later lookups of the same file return {@code null} and the file is read normally.
+     * @param attributes The current attributes of the file.
+     * @return The contents and their hash, or {@code null} if the file isn't cached, has changed or was already looked up.
+     */
+    @Nullable
+    Cached lookup(Path path, BasicFileAttributes attributes) {
+        var key = path.toString();
+        var entry = entries.get(key);
+        if (entry == null || entry.data() == null || !entry.matches(attributes.size(), toNanos(attributes.lastModifiedTime()))) return null;
+
+        var data = entry.data().duplicate();
+        if (hash(data) != entry.hash()) {
+            LOGGER.warn("Packed config cache entry for {} is corrupted", path);
+            return null;
+        }
+        entries.replace(key, entry, entry.released());
+        return new Cached(data, entry.hash());
+    }
+
+    /**
+     * Stores the contents of a config file, which were read or written with the given attributes.
+     */
+    void put(Path path, long size, FileTime modified, ByteBuffer data, long hash) {
+        var key = path.toString();
+        var existing = entries.get(key);
+        var modifiedNanos = toNanos(modified);
+        if (existing != null && existing.matches(size, modifiedNanos) && existing.hash() == hash) {
+            // Released entries are read normally, which still counts as using them
+            if (!existing.used()) entries.replace(key, existing, existing.released());
+            return;
+        }
+
+        var bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        entries.put(key, new Entry(size, modifiedNanos, hash, ByteBuffer.wrap(bytes), bytes.length, -1, true));
+        if (flushScheduled.compareAndSet(false, true)) {
+            AsyncConfigWriter.submitDelayed(this::flush, FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes all entries to the cache file, if they changed since the last write.
+     */
+    void flush() {
+        if (!flushScheduled.getAndSet(false)) return;
+        write(false);
+    }
+
+    /**
+     * Writes the cache a last time, dropping entries that weren't used. Called by {@link AsyncConfigWriter} once saves are done.
+     */
+    void flushOnShutdown() {
+        var changed = flushScheduled.getAndSet(false);
+        if (changed || entries.values().stream().anyMatch(entry -> !entry.used())) write(true);
+    }
+
+    private void write(boolean dropUnused) {
+        synchronized (writeLock) {
+            try {
+                var written = new ArrayList<Map.Entry<String, Entry>>();
+                var contents = new ArrayList<ByteBuffer>();
+                try (var previous = openPrevious()) {
+                    for (var entry : entries.entrySet()) {
+                        if (dropUnused && !entry.getValue().used()) continue;
+                        var data = contents(entry.getKey(), entry.getValue(), previous);
+                        if (data == null) continue;
+                        written.add(entry);
+                        contents.add(data);
+                    }
+                }
+                var offsets = new long[written.size()];
+                AtomicFiles.write(file, write(written, contents, offsets));
+
+                // Entries that changed while writing keep their new data for the next write
+                var writtenKeys = new HashSet<String>();
+                for (int i = 0; i < written.size(); i++) {
+                    var entry = written.get(i).getValue();
+                    var offset = offsets[i];
+                    writtenKeys.add(written.get(i).getKey());
+                    entries.computeIfPresent(written.get(i).getKey(), (key, current) -> current.isSameFile(entry) ? current.stored(offset) : current);
+                }
+                // Released entries that weren't written, because they were unused when writing started, can't be read anymore
+                entries.entrySet().removeIf(entry -> dropUnused && !entry.getValue().used()
+                        || entry.getValue().data() == null && !writtenKeys.contains(entry.getKey()));
+            } catch (IOException e) {
+                // Only a cache, the config files are still up to date
+                LOGGER.error("Failed to write packed config cache {}", file, e);
+            }
+        }
+    }
+
+    @Nullable
+    private FileChannel openPrevious() throws IOException {
+        try {
+            return FileChannel.open(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the contents of an entry, reading released ones from the previous cache file.
+     * @return The contents, or {@code null} if they can't be read anymore, in which case the entry is dropped.
+     */
+    @Nullable
+    private ByteBuffer contents(String key, Entry entry, @Nullable FileChannel previous) throws IOException {
+        if (entry.data() != null) return entry.data().duplicate();
+
+        var data = ByteBuffer.allocate(entry.length());
+        while (previous != null && data.hasRemaining()) {
+            if (previous.read(data, entry.offset() + data.position()) < 0) break;
+        }
+        data.flip();
+        if (data.remaining() != entry.length() || hash(data) != entry.hash()) {
+            // The config is read normally next time, which caches it again
+            LOGGER.warn("Dropping packed config cache entry for {}, as the cache file changed", key);
+            entries.remove(key, entry);
+            return null;
+        }
+        return data;
+    }
+
+    private static Map<String, Entry> read(Path file) {
+        var entries = new ConcurrentHashMap<String, Entry>();
+        try {
+            var data = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (data.getInt() != MAGIC || data.get() != VERSION) {
+                LOGGER.warn("Ignoring packed config cache {} with unknown format", file);
+                return entries;
+            }
+            var count = data.getInt();
+            var index = new ArrayList<IndexEntry>();
+            for (int i = 0; i < count; i++) {
+                var keyBytes = new byte[Short.toUnsignedInt(data.getShort())];
+                data.get(keyBytes);
+                index.add(new IndexEntry(new String(keyBytes, StandardCharsets.UTF_8), data.getLong(), data.getLong(), data.getLong(), data.getInt(), data.getInt()));
+            }
+            var contentStart = data.position();
+            for (var entry : index) {
+                var offset = contentStart + entry.offset();
+                var content = data.slice(offset, entry.length());
+                entries.put(entry.key(), new Entry(entry.size(), entry.modified(), entry.hash(), content, entry.length(), offset, false));
+            }
+        } catch (NoSuchFileException e) {
+            // Created on the first flush
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException e) {
+            LOGGER.warn("Ignoring unreadable packed config cache {}", file, e);
+            entries.clear();
+        }
+        return entries;
+    }
+
+    /**
+     * Encodes the cache file.
+     * @param offsets Receives the position of each entry in the file.
+     */
+    private static byte[] write(List<Map.Entry<String, Entry>> entries, List<ByteBuffer> contents, long[] offsets) {
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(entries.size());
+            var offset = 0;
+            for (int i = 0; i < entries.size(); i++) {
+                var entry = entries.get(i);
+                var keyBytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeShort(keyBytes.length);
+                out.write(keyBytes);
+                out.writeLong(entry.getValue().size());
+                out.writeLong(entry.getValue().modified());
+                out.writeLong(entry.getValue().hash());
+                out.writeInt(offset);
+                out.writeInt(contents.get(i).remaining());
+                offsets[i] = offset;
+                offset += contents.get(i).remaining();
+            }
+            var contentStart = out.size();
+            for (int i = 0; i < entries.size(); i++) {
+                var data = contents.get(i);
+                out.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+                offsets[i] += contentStart;
+            }
+        } catch (IOException e) {
+            // Can't happen with in memory streams
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static long toNanos(FileTime time) {
+        return time.to(TimeUnit.NANOSECONDS);
+    }
+
+    private static long hash(ByteBuffer data) {
+        var crc = new CRC32C();
+        crc.update(data.duplicate());
+        return crc.getValue();
+    }
+
+    /**
+     * The contents of a cached file, with the hash they were verified against so that callers don't hash them again.
+     */
+    record Cached(ByteBuffer data, long hash) {
+    }
+
+    /**
+     * A cached file.
+     * @param data The contents, backed by an array, either a copy of the file or a part of the read cache file.
+     *             {@code null} once released, in which case they are only stored in the cache file.
+     * @param length The length of the contents.
+     * @param offset The position of the contents in the cache file, or {@code -1} if they haven't been written yet.
+     * @param used Whether a config looked up or stored the file since the cache was enabled.
+     */
+    private record Entry(long size, long modified, long hash, @Nullable ByteBuffer data, int length, long offset, boolean used) {
+        private boolean matches(long size, long modified) {
+            return this.size == size && this.modified == modified;
+        }
+
+        private boolean isSameFile(Entry other) {
+            return matches(other.size, other.modified) && hash == other.hash;
+        }
+
+        /**
+         * Drops the contents if they are in the cache file and marks the entry as used.
+         */
+        private Entry released() {
+            return new Entry(size, modified, hash, offset < 0 ? data : null, length, offset, true);
+        }
+
+        private Entry stored(long offset) {
+            return new Entry(size, modified, hash, null, length, offset, used);
+        }
+    }
+
+    private record IndexEntry(String key, long size, long modified, long hash, int offset, int length) {
+    }
+}
@@ -0,0 +1,94 @@
+package io.github.mattidragon.configloader.impl;
+
+import io.github.mattidragon.configloader.api.ConfigManager;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A listener that runs on its own executor. Values are queued, or only the latest one is kept depending on the policy,
+ * and delivered by a single task at a time, so the listener never runs concurrently with itself and sees versions in increasing order.
+ */
+final class ScheduledListener<D> {
+    private static final Logger LOGGER = LoggerFactory.getLogger("ConfigLoader/ScheduledListener");
+
+    private final String configId;
+    private final ConfigStatsRecorder stats;
+    private final Executor executor;
+    private final ConfigManager.ListenerPolicy policy;
+    private final ConfigManager.OnLoadCallback<D> callback;
+    /**
+     * Values waiting for delivery with {@link ConfigManager.ListenerPolicy#EVERY_CHANGE}.
+     */
+    private final Queue<Pending<D>> queue = new ConcurrentLinkedQueue<>();
+    /**
+     * The newest value waiting for delivery with {@link ConfigManager.ListenerPolicy#LATEST_ONLY}.
+     */
+    private final AtomicReference<Pending<D>> latest = new AtomicReference<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    /**
+     * Only accessed by the delivering task. Tasks are ordered by {@link #scheduled}, so no further synchronization is needed.
+     */
+    private long deliveredVersion = -1;
+
+    ScheduledListener(String configId, ConfigStatsRecorder stats, Executor executor, ConfigManager.ListenerPolicy policy, ConfigManager.OnLoadCallback<D> callback) {
+        this.configId = configId;
+        this.stats = stats;
+        this.executor = executor;
+        this.policy = policy;
+        this.callback = callback;
+    }
+
+    void submit(D value, long version) {
+        var pending = new Pending<>(value, version);
+        if (policy == ConfigManager.ListenerPolicy.LATEST_ONLY) {
+            latest.accumulateAndGet(pending, (current, next) -> current == null || next.version() > current.version() ? next : current);
+        } else {
+            queue.add(pending);
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        if (!scheduled.compareAndSet(false, true)) return;
+        try {
+            executor.execute(this::deliver);
+        } catch (RejectedExecutionException e) {
+            scheduled.set(false);
+            LOGGER.error("Executor rejected listener {} of config {}", callback.getClass().getName(), configId, e);
+        }
+    }
+
+    private void deliver() {
+        Pending<D> pending;
+        while ((pending = poll()) != null) {
+            // Concurrent changes can be submitted out of order, older values are skipped
+            if (pending.version() <= deliveredVersion) continue;
+            deliveredVersion = pending.version();
+            var dispatch = new ListenerDispatch(configId, "scheduled listener", stats);
+            try {
+                dispatch.invoke(callback, pending.value());
+            } finally {
+                dispatch.finish();
+            }
+        }
+        scheduled.set(false);
+        // Values submitted after the last poll but before the flag was cleared didn't schedule a task
+        if (latest.get() != null || !queue.isEmpty()) schedule();
+    }
+
+    @Nullable
+    private Pending<D> poll() {
+        return policy == ConfigManager.ListenerPolicy.LATEST_ONLY ? latest.getAndSet(null) : queue.poll();
+    }
+
+    private record Pending<D>(D value, long version) {
+    }
+}
@@ -0,0 +1,204 @@
+package io.github.mattidragon.configloader.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.github.mattidragon.configloader.api.LazySection;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Makes a newly decoded config value share unchanged parts with the previous value.
+ * Parts that are equal to the part in the same place of the previous value are replaced by it,
+ * so unchanged nested records keep their identity across reloads and only changed parts stay newly allocated.
+ * Strings and identifiers that appear multiple times are also deduplicated.
+ * <p>
+ * Records are rebuilt through their canonical constructor if only some of their components could be shared.
+ * Lists and maps are rebuilt if they are immutable Guava or JDK collections and updated in place if they are array lists or hash maps.
+ * Other values are only replaced as a whole when they are equal.
+ * {@link LazySection}s are only replaced when both are undecoded and have equal data, as comparing them otherwise decodes them.
+ */
+final class ValueCanonicalizer {
+    private static final ClassValue<RecordInfo> RECORDS = new ClassValue<>() {
+        @Override
+        protected RecordInfo computeValue(Class<?> type) {
+            return RecordInfo.of(type);
+        }
+    };
+
+    private final Map<Object, Object> interned = new HashMap<>();
+
+    private ValueCanonicalizer() {
+    }
+
+    /**
+     * Canonicalizes a value against the previous value.
+     * @return A value equal to {@code current}, sharing as much as possible with {@code previous}. Is {@code previous} itself if they are equal.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T canonicalize(T current, T previous) {
+        return (T) new ValueCanonicalizer().canonicalizeValue(current, previous);
+    }
+
+    @Nullable
+    private Object canonicalizeValue(@Nullable Object current, @Nullable Object previous) {
+        if (current == previous || current == null) return current;
+        // Only share values of the same class, as the codec might rely on the exact type, like a mutable list
+        var sameType = previous != null && previous.getClass() == current.getClass();
+
+        if (current instanceof String || current instanceof Identifier) {
+            var canonical = sameType && current.equals(previous) ? previous : current;
+            var existing = interned.putIfAbsent(canonical, canonical);
+            return existing == null || canonical == previous ? canonical : existing;
+        }
+        if (current instanceof Record) return canonicalizeRecord(current, sameType ? previous : null);
+        if (current instanceof List<?> list) return canonicalizeList(list, sameType ? (List<?>) previous : null);
+        if (current instanceof Map<?, ?> map) return canonicalizeMap(map, sameType ? (Map<?, ?>) previous : null);
+        if (current instanceof Optional<?> optional && optional.isPresent()) {
+            var previousValue = sameType ? ((Optional<?>) previous).orElse(null) : null;
+            var canonical = canonicalizeValue(optional.get(), previousValue);
+            if (canonical == previousValue) return previous;
+            return canonical == optional.get() ? current : Optional.of(canonical);
+        }
+        if (current instanceof LazySection<?> section) {
+            return sameType && section.isSameUndecoded((LazySection<?>) previous) ? previous : current;
+        }
+        return sameType && current.equals(previous) ? previous : current;
+    }
+
+    private Object canonicalizeRecord(Object current, @Nullable Object previous) {
+        var info = RECORDS.get(current.getClass());
+        if (info == null) return sameOrCurrent(current, previous);
+
+        try {
+            var values = new Object[info.accessors().length];
+            var allPrevious = previous != null;
+            var anyReplaced = false;
+            for (int i = 0; i < values.length; i++) {
+                var value = info.accessors()[i].invoke(current);
+                var previousValue = previous == null ? null : info.accessors()[i].invoke(previous);
+                values[i] = canonicalizeValue(value, previousValue);
+                allPrevious &= values[i] == previousValue;
+                anyReplaced |= values[i] != value;
+            }
+            if (allPrevious) return previous;
+            if (!anyReplaced) return current;
+            return info.constructor().newInstance(values);
+        } catch (InvocationTargetException | InstantiationException | IllegalAccessException e) {
+            // Records that validate in their constructor should accept equal values, but don't break reloading if they don't
+            return current;
+        }
+    }
+
+    private Object canonicalizeList(List<?> current, @Nullable List<?> previous) {
+        var values = new Object[current.size()];
+        var allPrevious = previous != null && previous.size() == current.size();
+        var anyReplaced = false;
+        for (int i = 0; i < values.length; i++) {
+            var value = current.get(i);
+            var previousValue = previous != null && i < previous.size() ? previous.get(i) : null;
+            values[i] = canonicalizeValue(value, previousValue);
+            allPrevious &= values[i] == previousValue;
+            anyReplaced |= values[i] != value;
+        }
+        if (allPrevious) return previous;
+        if (!anyReplaced) return current;
+
+        if (current instanceof ImmutableList<?>) return ImmutableList.copyOf(values);
+        if (isJdkImmutable(current)) return List.of(values);
+        if (current instanceof ArrayList<?> list) {
+            @SuppressWarnings("unchecked")
+            var mutable = (ArrayList<Object>) list;
+            for (int i = 0; i < values.length; i++) {
+                mutable.set(i, values[i]);
+            }
+            return mutable;
+        }
+        return current;
+    }
+
+    private Object canonicalizeMap(Map<?, ?> current, @Nullable Map<?, ?> previous) {
+        var keys = new Object[current.size()];
+        var values = new Object[current.size()];
+        var allPrevious = previous != null && previous.size() == current.size();
+        var anyReplaced = false;
+        var i = 0;
+        for (var entry : current.entrySet()) {
+            var previousValue = previous == null ? null : previous.get(entry.getKey());
+            keys[i] = canonicalizeValue(entry.getKey(), null);
+            values[i] = canonicalizeValue(entry.getValue(), previousValue);
+            allPrevious &= values[i] == previousValue && (previousValue != null || previous.containsKey(entry.getKey()));
+            anyReplaced |= keys[i] != entry.getKey() || values[i] != entry.getValue();
+            i++;
+        }
+        if (allPrevious) return previous;
+        if (!anyReplaced) return current;
+
+        if (current instanceof ImmutableMap<?, ?>) {
+            var builder = ImmutableMap.builderWithExpectedSize(keys.length);
+            for (int j = 0; j < keys.length; j++) {
+                builder.put(keys[j], values[j]);
+            }
+            return builder.build();
+        }
+        if (isJdkImmutable(current)) {
+            var copy = new HashMap<>(keys.length);
+            for (int j = 0; j < keys.length; j++) {
+                copy.put(keys[j], values[j]);
+            }
+            return Map.copyOf(copy);
+        }
+        if (current instanceof HashMap<?, ?> map) {
+            // Also covers linked hash maps, which keep their order as entries are added back in the same order
+            @SuppressWarnings("unchecked")
+            var mutable = (HashMap<Object, Object>) map;
+            mutable.clear();
+            for (int j = 0; j < keys.length; j++) {
+                mutable.put(keys[j], values[j]);
+            }
+            return mutable;
+        }
+        return current;
+    }
+
+    private static Object sameOrCurrent(Object current, @Nullable Object previous) {
+        return current.equals(previous) ? previous : current;
+    }
+
+    private static boolean isJdkImmutable(Object collection) {
+        return collection.getClass().getName().startsWith("java.util.ImmutableCollections$");
+    }
+
+    /**
+     * The accessors and canonical constructor of a record class, or {@code null} from {@link #of} if they aren't accessible.
+     */
+    private record RecordInfo(Method[] accessors, Constructor<?> constructor) {
+        @Nullable
+        private static RecordInfo of(Class<?> type) {
+            try {
+                var components = type.getRecordComponents();
+                var accessors = new Method[components.length];
+                var types = new Class<?>[components.length];
+                for (int i = 0; i < components.length; i++) {
+                    accessors[i] = components[i].getAccessor();
+                    accessors[i].setAccessible(true);
+                    types[i] = components[i].getType();
+                }
+                var constructor = type.getDeclaredConstructor(types);
+                constructor.setAccessible(true);
+                return new RecordInfo(accessors, constructor);
+            } catch (NoSuchMethodException | RuntimeException e) {
+                // Inaccessible records, for example in modules that aren't open, are compared as a whole instead
+                return null;
+            }
+        }
+    }
+}
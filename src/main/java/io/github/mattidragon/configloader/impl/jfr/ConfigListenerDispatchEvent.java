@@ -0,0 +1,26 @@
+package io.github.mattidragon.configloader.impl.jfr;
+
+import jdk.jfr.*;
+
+@Name("configtoolkit.ConfigListenerDispatch")
+@Label("Config Listener Dispatch")
+@Category("ConfigToolkit")
+@Description("Invocation of all listeners for one change of a config")
+public final class ConfigListenerDispatchEvent extends Event {
+    @Label("Config Id")
+    public String configId;
+
+    @Label("Kind")
+    @Description("Which listeners were invoked")
+    public String kind;
+
+    @Label("Listener Count")
+    public int listenerCount;
+
+    @Label("Slowest Listener")
+    public Class<?> slowestListener;
+
+    @Label("Slowest Listener Duration")
+    @Timespan
+    public long slowestListenerDuration;
+}
@@ -0,0 +1,36 @@
+package io.github.mattidragon.configloader.impl.jfr;
+
+import jdk.jfr.*;
+
+@Name("configtoolkit.ConfigLoad")
+@Label("Config Load")
+@Category("ConfigToolkit")
+@Description("Reading and decoding of a config file")
+public final class ConfigLoadEvent extends Event {
+    @Label("Config Id")
+    public String configId;
+
+    @Label("File Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Read Duration")
+    @Timespan
+    public long readDuration;
+
+    @Label("Parse Duration")
+    @Description("Time spent parsing json. Zero for streaming codecs, which parse while decoding.")
+    @Timespan
+    public long parseDuration;
+
+    @Label("Decode Duration")
+    @Timespan
+    public long decodeDuration;
+
+    @Label("Skipped")
+    @Description("Whether the file was unchanged and not parsed")
+    public boolean skipped;
+
+    @Label("Success")
+    public boolean success;
+}
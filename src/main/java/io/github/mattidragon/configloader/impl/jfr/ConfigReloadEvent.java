@@ -0,0 +1,23 @@
+package io.github.mattidragon.configloader.impl.jfr;
+
+import jdk.jfr.*;
+
+@Name("configtoolkit.ConfigReload")
+@Label("Config Reload")
+@Category("ConfigToolkit")
+@Description("A reload of a config, including loading, listeners and rewriting the file")
+public final class ConfigReloadEvent extends Event {
+    @Label("Config Id")
+    public String configId;
+
+    @Label("Trigger")
+    @Description("What caused the reload, either an explicit call or a file watcher")
+    public String trigger;
+
+    @Label("Changed")
+    @Description("Whether the file had changed since it was last read or written")
+    public boolean changed;
+
+    @Label("Error")
+    public String error;
+}
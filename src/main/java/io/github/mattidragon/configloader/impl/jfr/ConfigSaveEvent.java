@@ -0,0 +1,27 @@
+package io.github.mattidragon.configloader.impl.jfr;
+
+import jdk.jfr.*;
+
+@Name("configtoolkit.ConfigSave")
+@Label("Config Save")
+@Category("ConfigToolkit")
+@Description("Writing of a config file. The event duration covers writing only, encoding happens before it starts.")
+public final class ConfigSaveEvent extends Event {
+    @Label("Config Id")
+    public String configId;
+
+    @Label("File Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Encode Duration")
+    @Timespan
+    public long encodeDuration;
+
+    @Label("Written")
+    @Description("False if the file already had the same contents and writing was skipped")
+    public boolean written;
+
+    @Label("Success")
+    public boolean success;
+}
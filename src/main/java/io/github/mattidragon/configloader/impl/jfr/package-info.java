@@ -0,0 +1,4 @@
+@ApiStatus.Internal
+package io.github.mattidragon.configloader.impl.jfr;
+
+import org.jetbrains.annotations.ApiStatus;
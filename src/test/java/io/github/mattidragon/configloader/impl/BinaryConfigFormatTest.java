@@ -0,0 +1,137 @@
+package io.github.mattidragon.configloader.impl;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryConfigFormatTest {
+    private static final byte[] HEADER = {0x43, 0x54, 0x4B, 0x42, 1};
+
+    private static JsonObject sample() {
+        var json = JsonParser.parseString("""
+                {
+                  "string": "value", "repeated": "value", "empty": "",
+                  "int": 5, "negative": -9223372036854775808, "double": 0.1, "decimal": 1.50, "big": 123456789012345678901234567890,
+                  "true": true, "false": false, "null": null,
+                  "array": [1, "value", [], {}, [null, [2.5e300]]],
+                  "object": {"nested": {"value": "nested"}, "emptyObject": {}}
+                }
+                """).getAsJsonObject();
+        json.addProperty("float", 1.25f);
+        json.addProperty("nan", Double.NaN);
+        json.add("decimalObject", new JsonPrimitive(new BigDecimal("-0.000")));
+        return json;
+    }
+
+    private static JsonElement read(byte[] data) throws IOException {
+        return BinaryConfigFormat.INSTANCE.read(ByteBuffer.wrap(data));
+    }
+
+    private static byte[] concat(byte[] first, byte... second) {
+        var result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    @Test
+    public void roundTrips() throws IOException {
+        var json = sample();
+        var read = read(BinaryConfigFormat.INSTANCE.write(json));
+        assertEquals(json, read);
+        // Numbers must also keep their text, which equality doesn't fully check
+        assertEquals(json.toString(), read.toString());
+    }
+
+    @Test
+    public void roundTripsPrimitiveRoots() throws IOException {
+        for (var json : new JsonElement[] {JsonNull.INSTANCE, new JsonPrimitive("root"), new JsonPrimitive(-1), new JsonArray()}) {
+            assertEquals(json, read(BinaryConfigFormat.INSTANCE.write(json)));
+        }
+    }
+
+    @Test
+    public void readsDirectBuffers() throws IOException {
+        var data = BinaryConfigFormat.INSTANCE.write(sample());
+        var buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data).flip();
+        assertEquals(sample(), BinaryConfigFormat.INSTANCE.read(buffer));
+    }
+
+    @Test
+    public void rejectsTruncatedData() {
+        var data = BinaryConfigFormat.INSTANCE.write(sample());
+        for (int length = 0; length < data.length; length++) {
+            var truncated = Arrays.copyOf(data, length);
+            assertThrows(IOException.class, () -> read(truncated), "Length " + length);
+        }
+    }
+
+    @Test
+    public void rejectsTrailingData() {
+        var data = BinaryConfigFormat.INSTANCE.write(sample());
+        assertThrows(IOException.class, () -> read(concat(data, (byte) 0)));
+    }
+
+    @Test
+    public void rejectsMalformedData() {
+        // Wrong magic and version
+        assertThrows(IOException.class, () -> read(new byte[] {0x43, 0x54, 0x4B, 0x43, 1, 0, 0}));
+        assertThrows(IOException.class, () -> read(new byte[] {0x43, 0x54, 0x4B, 0x42, 2, 0, 0}));
+        // Unknown tag
+        assertThrows(IOException.class, () -> read(concat(HEADER, (byte) 0, (byte) 9)));
+        // String index out of bounds
+        assertThrows(IOException.class, () -> read(concat(HEADER, (byte) 0, (byte) 5, (byte) 0)));
+        // Decimal that isn't a number
+        assertThrows(IOException.class, () -> read(concat(HEADER, (byte) 1, (byte) 1, (byte) 'x', (byte) 8, (byte) 0)));
+        // Varint that doesn't end and one that is too large for a size
+        assertThrows(IOException.class, () -> read(concat(HEADER, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+                (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0)));
+        assertThrows(IOException.class, () -> read(concat(HEADER, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0x0F)));
+    }
+
+    @Test
+    public void rejectsSizesLargerThanData() {
+        // An array and an object claiming Integer.MAX_VALUE elements must fail before allocating anything for them
+        var size = new byte[] {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        assertThrows(IOException.class, () -> read(concat(concat(HEADER, (byte) 0, (byte) 6), size)));
+        assertThrows(IOException.class, () -> read(concat(concat(HEADER, (byte) 0, (byte) 7), size)));
+        assertThrows(IOException.class, () -> read(concat(HEADER, size)));
+    }
+
+    @Test
+    public void rejectsDeepNesting() {
+        var data = Arrays.copyOf(HEADER, HEADER.length + 1 + 100_000 * 2 + 1);
+        for (int i = 0; i < 100_000; i++) {
+            data[HEADER.length + 1 + i * 2] = 6;
+            data[HEADER.length + 2 + i * 2] = 1;
+        }
+        assertThrows(IOException.class, () -> read(data));
+    }
+
+    @Test
+    public void corruptedBytesOnlyThrowIOExceptions() {
+        var data = BinaryConfigFormat.INSTANCE.write(sample());
+        for (int i = 0; i < data.length; i++) {
+            for (var value : new byte[] {0, 1, 5, 6, 7, 8, 0x7F, (byte) 0x80, (byte) 0xFF}) {
+                var corrupted = data.clone();
+                corrupted[i] = value;
+                try {
+                    read(corrupted);
+                } catch (IOException e) {
+                    // Expected for most positions, anything else fails the test
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package io.github.mattidragon.configloader.impl;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConfigDeltaTest {
+    private static final List<String> VALUES = List.of(
+            "{}",
+            "{\"a\": 1}",
+            "{\"a\": 2}",
+            "{\"a\": \"1\"}",
+            "{\"a\": null}",
+            "{\"a\": {}}",
+            "{\"a\": {\"b\": 1}}",
+            "{\"a\": {\"b\": 1, \"c\": [1, 2]}}",
+            "{\"a\": {\"b\": {\"c\": {}}}, \"d\": true}",
+            "{\"a\": {\"b\": {\"c\": {\"e\": 1}}}}",
+            "{\"a\": [1, {\"b\": 2}], \"c\": {\"d\": {}}}",
+            "{\"a.b\": 1, \"c\": {\"d\": 2, \"e\": 3}}",
+            "{\"a\": {\"b\": 1}, \"c\": {\"d\": 2}, \"e\": {\"f\": {\"g\": 3}}}"
+    );
+
+    private static JsonObject json(String text) {
+        return JsonParser.parseString(text).getAsJsonObject();
+    }
+
+    @Test
+    public void appliedDiffReproducesTarget() throws IOException {
+        for (var baseText : VALUES) {
+            for (var targetText : VALUES) {
+                var base = json(baseText);
+                var target = json(targetText);
+                var delta = ConfigDelta.diff(base, target);
+                if (base.equals(target)) {
+                    assertNull(delta);
+                    continue;
+                }
+                assertNotNull(delta);
+                assertEquals(target, ConfigDelta.apply(base, delta), () -> baseText + " -> " + targetText);
+                // Deltas are sent in the binary format, so they must survive it too
+                var sent = BinaryConfigFormat.INSTANCE.read(ByteBuffer.wrap(BinaryConfigFormat.INSTANCE.write(delta))).getAsJsonObject();
+                assertEquals(target, ConfigDelta.apply(base, sent), () -> baseText + " -> " + targetText);
+                assertEquals(json(baseText), base, "Applying must not modify the base");
+            }
+        }
+    }
+
+    @Test
+    public void diffOnlyContainsChanges() {
+        var delta = ConfigDelta.diff(json("{\"a\": {\"b\": 1, \"c\": 2}, \"d\": 3}"), json("{\"a\": {\"b\": 1, \"c\": 4}}"));
+        assertEquals(json("{\"changed\": {\"a\": {\"c\": 4}}, \"removed\": [[\"d\"]]}"), delta);
+    }
+
+    @Test
+    public void sharesUnchangedValues() {
+        var base = json("{\"a\": {\"b\": 1}, \"c\": {\"d\": 2}}");
+        var result = ConfigDelta.apply(base, ConfigDelta.diff(base, json("{\"a\": {\"b\": 2}, \"c\": {\"d\": 2}}")));
+        assertSame(base.get("c"), result.get("c"));
+    }
+
+    @Test
+    public void rejectsMalformedDeltas() {
+        var base = json("{\"a\": {\"b\": 1}}");
+        assertThrows(IllegalArgumentException.class, () -> ConfigDelta.apply(base, json("{}")));
+        assertThrows(IllegalArgumentException.class, () -> ConfigDelta.apply(base, json("{\"changed\": [], \"removed\": []}")));
+        assertThrows(IllegalArgumentException.class, () -> ConfigDelta.apply(base, json("{\"changed\": {}, \"removed\": [\"a\"]}")));
+        assertThrows(IllegalArgumentException.class, () -> ConfigDelta.apply(base, json("{\"changed\": {}, \"removed\": [[]]}")));
+        assertThrows(IllegalArgumentException.class, () -> ConfigDelta.apply(base, json("{\"changed\": {}, \"removed\": [[\"a\", {}]]}")));
+    }
+}
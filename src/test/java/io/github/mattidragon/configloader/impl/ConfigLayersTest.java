@@ -0,0 +1,97 @@
+package io.github.mattidragon.configloader.impl;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConfigLayersTest {
+    private static final JsonObject DEFAULTS = json("{\"a\": 1, \"b\": {\"c\": 2, \"d\": 3}, \"list\": [1], \"empty\": {}}");
+
+    private static JsonObject json(String text) {
+        return JsonParser.parseString(text).getAsJsonObject();
+    }
+
+    private static JsonObject encoded(String changes) {
+        return ConfigLayers.merge(DEFAULTS, json(changes));
+    }
+
+    @Test
+    public void keepsOnlyChangedValues() {
+        var layers = ConfigLayers.of(DEFAULTS);
+        assertEquals(json("{}"), layers.toGlobalLayer(DEFAULTS));
+        assertEquals(json("{\"a\": 5}"), layers.toGlobalLayer(encoded("{\"a\": 5}")));
+        assertEquals(json("{\"b\": {\"d\": 4}}"), layers.toGlobalLayer(encoded("{\"b\": {\"d\": 4}}")));
+        // Arrays are replaced as a whole
+        assertEquals(json("{\"list\": [1, 2]}"), layers.toGlobalLayer(encoded("{\"list\": [1, 2]}")));
+        assertEquals(json("{\"b\": 7}"), layers.toGlobalLayer(encoded("{\"b\": 7}")));
+    }
+
+    @Test
+    public void keepsEmptyObjectsMissingFromDefaults() {
+        var layers = ConfigLayers.of(DEFAULTS);
+        assertEquals(json("{\"extra\": {}}"), layers.toGlobalLayer(encoded("{\"extra\": {}}")));
+        assertEquals(json("{\"extra\": {\"inner\": {}}}"), layers.toGlobalLayer(encoded("{\"extra\": {\"inner\": {}}}")));
+        // Empty objects that exist in the defaults decode the same without being stored
+        assertEquals(json("{}"), layers.toGlobalLayer(encoded("{\"empty\": {}}")));
+    }
+
+    @Test
+    public void keepsGlobalValuesUnderUpperLayers() {
+        var layers = ConfigLayers.of(DEFAULTS)
+                .withGlobal(json("{\"a\": 7}"))
+                .withInstance(json("{\"a\": 9, \"b\": {\"c\": 10}}"))
+                .withOverlay(json("{\"b\": {\"d\": 11}}"));
+        assertEquals(json("{\"a\": 9, \"b\": {\"c\": 10, \"d\": 11}, \"list\": [1], \"empty\": {}}"), layers.merged());
+        assertEquals(json("{\"a\": 9, \"b\": {\"c\": 10, \"d\": 3}, \"list\": [1], \"empty\": {}}"), layers.mergedInstance());
+
+        // Setting the merged value changes nothing, as every difference comes from the upper layers
+        assertEquals(json("{\"a\": 7}"), layers.toGlobalLayer(layers.merged()));
+        // Values under upper layers can't be changed by setting, others can
+        assertEquals(json("{\"a\": 7, \"list\": [2]}"), layers.toGlobalLayer(ConfigLayers.merge(layers.merged(), json("{\"a\": 1, \"list\": [2]}"))));
+        assertEquals(json("{\"a\": 7, \"b\": {\"e\": 1}}"), layers.toGlobalLayer(ConfigLayers.merge(layers.merged(), json("{\"b\": {\"e\": 1}}"))));
+    }
+
+    @Test
+    public void savesLocalChangesWhileSynced() {
+        var layers = ConfigLayers.of(DEFAULTS)
+                .withGlobal(json("{\"a\": 7, \"list\": [3]}"))
+                .withSync(json("{\"a\": 5, \"b\": {\"c\": 2, \"d\": 6}, \"list\": [4], \"empty\": {}}"));
+        assertTrue(layers.hasUpperLayers());
+        assertEquals(json("{\"a\": 5, \"b\": {\"c\": 2, \"d\": 6}, \"list\": [4], \"empty\": {}}"), layers.merged());
+
+        // Synced values don't leak into the global layer
+        assertEquals(json("{\"a\": 7, \"list\": [3]}"), layers.toGlobalLayer(layers.merged()));
+        // Values that differ from the synced ones were changed locally and are saved
+        assertEquals(json("{\"a\": 8, \"list\": [3]}"), layers.toGlobalLayer(ConfigLayers.merge(layers.merged(), json("{\"a\": 8}"))));
+        assertEquals(json("{\"a\": 7, \"b\": {\"c\": 9}, \"list\": [3]}"), layers.toGlobalLayer(ConfigLayers.merge(layers.merged(), json("{\"b\": {\"c\": 9}}"))));
+        // Changing a value back to the default removes it
+        assertEquals(json("{\"list\": [3]}"), layers.toGlobalLayer(ConfigLayers.merge(layers.merged(), json("{\"a\": 1}"))));
+    }
+
+    @Test
+    public void tracksUpperLayers() {
+        var layers = ConfigLayers.of(DEFAULTS);
+        assertFalse(layers.hasUpperLayers());
+        assertSame(layers, layers.withOverlay(json("{}")));
+
+        var withGlobal = layers.withGlobal(json("{\"a\": 2}"));
+        assertFalse(withGlobal.hasUpperLayers());
+        assertTrue(withGlobal.hasSameUpperLayers(layers));
+        assertTrue(withGlobal.withSync(json("{\"a\": 3}")).hasUpperLayers());
+        assertFalse(withGlobal.withSync(json("{\"a\": 3}")).hasSameUpperLayers(layers));
+        assertFalse(withGlobal.withInstance(json("{\"a\": 3}")).hasSameUpperLayers(layers));
+    }
+
+    @Test
+    public void mergeSharesUnchangedValues() {
+        var base = json("{\"a\": {\"b\": 1}, \"c\": {\"d\": 2}}");
+        assertSame(base, ConfigLayers.merge(base, new JsonObject()));
+        var merged = ConfigLayers.merge(base, json("{\"a\": {\"e\": 3}}"));
+        assertEquals(json("{\"a\": {\"b\": 1, \"e\": 3}, \"c\": {\"d\": 2}}"), merged);
+        assertSame(base.get("c"), merged.get("c"));
+        // The base is never modified
+        assertEquals(json("{\"a\": {\"b\": 1}, \"c\": {\"d\": 2}}"), base);
+    }
+}
@@ -0,0 +1,111 @@
+package io.github.mattidragon.configloader.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ValueCanonicalizerTest {
+    private static Inner inner(int value, String... tags) {
+        return new Inner(value, List.of(tags));
+    }
+
+    @Test
+    public void returnsPreviousWhenEqual() {
+        var previous = new Outer(inner(1, "a"), inner(2, "b"), Optional.of("c"));
+        assertSame(previous, ValueCanonicalizer.canonicalize(new Outer(inner(1, "a"), inner(2, "b"), Optional.of("c")), previous));
+    }
+
+    @Test
+    public void sharesUnchangedRecordComponents() {
+        var previous = new Outer(inner(1, "a"), inner(2, "b"), Optional.of("c"));
+        var current = new Outer(inner(1, "a"), inner(3, "b"), Optional.of("c"));
+        var result = ValueCanonicalizer.canonicalize(current, previous);
+        assertEquals(current, result);
+        assertSame(previous.first(), result.first());
+        assertSame(previous.third(), result.third());
+        // The changed record is rebuilt, but its unchanged list is still shared
+        assertNotSame(previous.second(), result.second());
+        assertSame(previous.second().tags(), result.second().tags());
+    }
+
+    @Test
+    public void sharesListElements() {
+        var previous = List.of(inner(1), inner(2));
+
+        var jdk = ValueCanonicalizer.canonicalize(List.of(inner(1), inner(3)), previous);
+        assertEquals(List.of(inner(1), inner(3)), jdk);
+        assertSame(previous.get(0), jdk.get(0));
+
+        var guavaPrevious = ImmutableList.of(inner(1), inner(2));
+        var guava = ValueCanonicalizer.canonicalize(ImmutableList.of(inner(1), inner(3)), guavaPrevious);
+        assertSame(guavaPrevious.get(0), guava.get(0));
+
+        // Mutable lists are updated in place, so they stay the same instance
+        var mutablePrevious = new ArrayList<>(List.of(inner(1), inner(2)));
+        var mutable = new ArrayList<>(List.of(inner(1), inner(3)));
+        assertSame(mutable, ValueCanonicalizer.canonicalize(mutable, mutablePrevious));
+        assertSame(mutablePrevious.get(0), mutable.get(0));
+
+        assertSame(mutablePrevious, ValueCanonicalizer.canonicalize(new ArrayList<>(List.of(inner(1), inner(2))), mutablePrevious));
+    }
+
+    @Test
+    public void sharesMapValues() {
+        var previous = Map.of("a", inner(1), "b", inner(2));
+        var jdk = ValueCanonicalizer.canonicalize(Map.of("a", inner(1), "b", inner(3)), previous);
+        assertEquals(Map.of("a", inner(1), "b", inner(3)), jdk);
+        assertSame(previous.get("a"), jdk.get("a"));
+
+        var guavaPrevious = ImmutableMap.of("a", inner(1), "b", inner(2));
+        var guava = ValueCanonicalizer.canonicalize(ImmutableMap.of("a", inner(1), "b", inner(3)), guavaPrevious);
+        assertSame(guavaPrevious.get("a"), guava.get("a"));
+
+        var mutablePrevious = new LinkedHashMap<>(Map.of("a", inner(1)));
+        var mutable = new LinkedHashMap<>(Map.of("a", inner(1)));
+        mutable.put("b", inner(2));
+        assertSame(mutable, ValueCanonicalizer.canonicalize(mutable, mutablePrevious));
+        assertSame(mutablePrevious.get("a"), mutable.get("a"));
+
+        // Removed keys make the map change, even if every remaining value is shared
+        var fullPrevious = new HashMap<>(Map.of("a", inner(1), "b", inner(2)));
+        var removed = new HashMap<>(Map.of("a", inner(1)));
+        assertSame(removed, ValueCanonicalizer.canonicalize(removed, fullPrevious));
+        assertSame(fullPrevious.get("a"), removed.get("a"));
+    }
+
+    @Test
+    public void onlySharesValuesOfTheSameClass() {
+        var previous = new ArrayList<>(List.of(inner(1)));
+        var current = List.of(inner(1));
+        assertSame(current, ValueCanonicalizer.canonicalize(current, previous));
+    }
+
+    @Test
+    public void internsStrings() {
+        var first = new String("duplicate");
+        var second = new String("duplicate");
+        var result = ValueCanonicalizer.canonicalize(List.of(first, second), List.of());
+        assertSame(result.get(0), result.get(1));
+
+        // Strings from the previous value win over duplicates in the new one
+        var previous = new String("duplicate");
+        var shared = ValueCanonicalizer.canonicalize(List.of(inner(1, first), inner(2, second)), List.of(inner(1, previous), inner(3)));
+        assertSame(previous, shared.get(0).tags().get(0));
+        assertSame(previous, shared.get(1).tags().get(0));
+    }
+
+    public record Outer(Inner first, Inner second, Optional<String> third) {
+    }
+
+    public record Inner(int value, List<String> tags) {
+    }
+}
@@ -0,0 +1,81 @@
+package io.github.mattidragon.configloader.test;
+
+import com.google.gson.JsonParser;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.Dynamic;
+import com.mojang.serialization.JsonOps;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import io.github.mattidragon.configloader.api.ConfigManager;
+import io.github.mattidragon.configloader.api.ConfigSync;
+import io.github.mattidragon.configloader.api.ConfigSyncChannel;
+import io.github.mattidragon.configloader.api.DefaultedFieldCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Syncs a config to the same game instance through {@link ConfigSyncChannel#loopback()}.
+ * The client side shows the received values through an overlay, which the server side doesn't send.
+ */
+public class ConfigSyncTest {
+    private static final Settings DEFAULT = new Settings(1, "default");
+    private static final Codec<Settings> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+            DefaultedFieldCodec.of(Codec.INT, "a", DEFAULT.a()).forGetter(Settings::a),
+            DefaultedFieldCodec.of(Codec.STRING, "b", DEFAULT.b()).forGetter(Settings::b)
+    ).apply(instance, Settings::new));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void syncsThroughLoopback() throws IOException {
+        var config = ConfigManager.builder(CODEC, DEFAULT, "sync_test").directory(directory).synced().build();
+        config.setOverlay(new Dynamic<>(JsonOps.INSTANCE, JsonParser.parseString("{\"a\": 5}")));
+        assertEquals(5, config.get().a());
+
+        var channel = ConfigSyncChannel.loopback();
+        // Records the same payloads, so that they can be received again
+        var sent = new ArrayList<byte[]>();
+        ConfigSyncChannel recorder = sent::add;
+        try {
+            ConfigSync.connect(channel);
+            ConfigSync.connect(recorder);
+            // Nothing is received until the payloads are delivered
+            assertEquals(5, config.get().a());
+            assertEquals(1, channel.deliver());
+            assertEquals(DEFAULT, config.get());
+
+            // Changes are sent as deltas, the synced values still win over the set ones
+            config.set(new Settings(3, "changed"));
+            assertEquals(DEFAULT, config.get());
+            assertEquals(1, channel.deliver());
+            assertEquals(new Settings(3, "changed"), config.get());
+
+            // The delta was already applied, so receiving it again doesn't match the base version
+            var delta = sent.get(sent.size() - 1);
+            assertThrows(IOException.class, () -> ConfigSync.receive(delta));
+            assertEquals(new Settings(3, "changed"), config.get());
+
+            ConfigSync.disconnect(channel);
+            config.set(new Settings(4, "disconnected"));
+            assertEquals(0, channel.deliver());
+            assertEquals(new Settings(3, "changed"), config.get());
+
+            // Resetting returns to the local values, with the overlay on top
+            ConfigSync.reset();
+            assertEquals(new Settings(5, "disconnected"), config.get());
+        } finally {
+            ConfigSync.disconnect(channel);
+            ConfigSync.disconnect(recorder);
+            ConfigSync.reset();
+        }
+    }
+
+    public record Settings(int a, String b) {
+    }
+}
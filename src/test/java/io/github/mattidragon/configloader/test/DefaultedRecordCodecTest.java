@@ -0,0 +1,118 @@
+package io.github.mattidragon.configloader.test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.JsonOps;
+import com.mojang.serialization.MapCodec;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import io.github.mattidragon.configloader.api.DefaultedFieldCodec;
+import io.github.mattidragon.configloader.api.DefaultedRecordCodec;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link DefaultedRecordCodec} decodes, fails and encodes exactly like the equivalent
+ * {@link RecordCodecBuilder} codec made of {@link DefaultedFieldCodec}s.
+ */
+public class DefaultedRecordCodecTest {
+    private static final Wide DEFAULT = new Wide(1, "default", true, 0.5, List.of(1, 2), 10L, "other");
+
+    private static final MapCodec<Wide> DFU_CODEC = RecordCodecBuilder.mapCodec(instance -> instance.group(
+            DefaultedFieldCodec.of(Codec.INT, "a", DEFAULT.a()).forGetter(Wide::a),
+            DefaultedFieldCodec.of(Codec.STRING, "b", DEFAULT.b()).forGetter(Wide::b),
+            DefaultedFieldCodec.of(Codec.BOOL, "c", DEFAULT.c()).forGetter(Wide::c),
+            DefaultedFieldCodec.of(Codec.DOUBLE, "d", DEFAULT.d()).forGetter(Wide::d),
+            DefaultedFieldCodec.of(Codec.INT.listOf(), "e", DEFAULT.e()).forGetter(Wide::e),
+            DefaultedFieldCodec.of(Codec.LONG, "f", DEFAULT.f()).forGetter(Wide::f),
+            DefaultedFieldCodec.of(Codec.STRING, "g", (Supplier<String>) DEFAULT::g).forGetter(Wide::g)
+    ).apply(instance, Wide::new));
+
+    private static final DefaultedRecordCodec.Field<Wide, Integer> A = DefaultedRecordCodec.field(Codec.INT, "a", DEFAULT.a(), Wide::a);
+    private static final DefaultedRecordCodec.Field<Wide, String> B = DefaultedRecordCodec.field(Codec.STRING, "b", DEFAULT.b(), Wide::b);
+    private static final DefaultedRecordCodec.Field<Wide, Boolean> C = DefaultedRecordCodec.field(Codec.BOOL, "c", DEFAULT.c(), Wide::c);
+    private static final DefaultedRecordCodec.Field<Wide, Double> D = DefaultedRecordCodec.field(Codec.DOUBLE, "d", DEFAULT.d(), Wide::d);
+    private static final DefaultedRecordCodec.Field<Wide, List<Integer>> E = DefaultedRecordCodec.field(Codec.INT.listOf(), "e", DEFAULT.e(), Wide::e);
+    private static final DefaultedRecordCodec.Field<Wide, Long> F = DefaultedRecordCodec.field(Codec.LONG, "f", DEFAULT.f(), Wide::f);
+    private static final DefaultedRecordCodec.Field<Wide, String> G = DefaultedRecordCodec.field(Codec.STRING, "g", (Supplier<String>) DEFAULT::g, Wide::g);
+    private static final DefaultedRecordCodec<Wide> RECORD_CODEC = DefaultedRecordCodec.of(List.of(A, B, C, D, E, F, G),
+            values -> new Wide(values.get(A), values.get(B), values.get(C), values.get(D), values.get(E), values.get(F), values.get(G)));
+
+    private static final List<String> INPUTS = List.of(
+            // Successes
+            "{}",
+            "{\"a\": 5, \"b\": \"x\", \"c\": false, \"d\": 2.5, \"e\": [3], \"f\": 7, \"g\": \"y\"}",
+            "{\"g\": \"y\", \"a\": 5}",
+            "{\"a\": null, \"e\": null}",
+            "{\"unknown\": 1, \"a\": 2}",
+            "{\"a\": 1, \"a\": 2}",
+            // Single errors
+            "{\"a\": \"x\"}",
+            "{\"e\": 1}",
+            // Multiple errors, which must be reported in the same order
+            "{\"g\": 1, \"a\": \"x\", \"c\": \"y\"}",
+            // Partial results, from lists with invalid elements
+            "{\"e\": [1, \"x\", 2]}",
+            "{\"e\": [\"x\"], \"b\": \"y\"}",
+            // Partial and non partial errors together
+            "{\"e\": [1, \"x\"], \"f\": \"y\"}",
+            // Not a map
+            "[]",
+            "1"
+    );
+
+    private static JsonElement json(String text) {
+        return JsonParser.parseString(text);
+    }
+
+    @Test
+    public void decodesLikeDfu() {
+        for (var input : INPUTS) {
+            var expected = DFU_CODEC.codec().parse(JsonOps.INSTANCE, json(input));
+            var actual = RECORD_CODEC.codec().parse(JsonOps.INSTANCE, json(input));
+            assertEquals(expected.result(), actual.result(), input);
+            assertEquals(expected.error().map(DataResult.PartialResult::message), actual.error().map(DataResult.PartialResult::message), input);
+            assertEquals(expected.error().flatMap(DataResult.PartialResult::partialResult), actual.error().flatMap(DataResult.PartialResult::partialResult), input);
+        }
+    }
+
+    @Test
+    public void encodesLikeDfu() {
+        for (var value : List.of(DEFAULT, new Wide(-3, "", false, Double.MAX_VALUE, List.of(), Long.MIN_VALUE, "\u00e4"))) {
+            assertEquals(DFU_CODEC.codec().encodeStart(JsonOps.INSTANCE, value).result(), RECORD_CODEC.codec().encodeStart(JsonOps.INSTANCE, value).result());
+        }
+    }
+
+    @Test
+    public void hasSameKeys() {
+        Set<JsonElement> expected = DFU_CODEC.keys(JsonOps.INSTANCE).collect(Collectors.toSet());
+        Set<JsonElement> actual = RECORD_CODEC.keys(JsonOps.INSTANCE).collect(Collectors.toSet());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void rejectsDuplicateNames() {
+        var duplicate = DefaultedRecordCodec.field(Codec.INT, "a", 0, Wide::a);
+        assertThrows(IllegalArgumentException.class, () -> DefaultedRecordCodec.of(List.of(A, duplicate), values -> DEFAULT));
+    }
+
+    @Test
+    public void rejectsForeignFields() {
+        var foreign = DefaultedRecordCodec.field(Codec.INT, "z", 0, Wide::a);
+        var codec = DefaultedRecordCodec.of(List.of(A), values -> {
+            values.get(foreign);
+            return DEFAULT;
+        });
+        assertThrows(IllegalArgumentException.class, () -> codec.codec().parse(JsonOps.INSTANCE, json("{}")));
+    }
+
+    public record Wide(int a, String b, boolean c, double d, List<Integer> e, long f, String g) {
+    }
+}
@@ -0,0 +1,123 @@
+package io.github.mattidragon.configloader.test;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.JsonOps;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import io.github.mattidragon.configloader.api.DefaultedFieldCodec;
+import io.github.mattidragon.configloader.test.ap.CodecTestRecord;
+import io.github.mattidragon.configloader.test.ap.MutableCodecTestRecord;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that generated stream codecs decode and encode the same values as the equivalent codec made of {@link DefaultedFieldCodec}s.
+ */
+public class JsonStreamCodecTest {
+    private static final CodecTestRecord.InnerCodecTestRecord DEFAULT_INNER = new CodecTestRecord.InnerCodecTestRecord("inner", 7);
+    private static final CodecTestRecord DEFAULT = new CodecTestRecord("default", 1, 0.5, true, List.of("a"), Map.of("g", List.of(1, 2)), DEFAULT_INNER);
+
+    private static final Codec<CodecTestRecord.InnerCodecTestRecord> DFU_INNER_CODEC = RecordCodecBuilder.create(instance -> instance.group(
+            DefaultedFieldCodec.of(Codec.STRING, "a", DEFAULT_INNER.a()).forGetter(CodecTestRecord.InnerCodecTestRecord::a),
+            DefaultedFieldCodec.of(Codec.LONG, "b", DEFAULT_INNER.b()).forGetter(CodecTestRecord.InnerCodecTestRecord::b)
+    ).apply(instance, CodecTestRecord.InnerCodecTestRecord::new));
+    private static final Codec<CodecTestRecord> DFU_CODEC = RecordCodecBuilder.create(instance -> instance.group(
+            DefaultedFieldCodec.of(Codec.STRING, "name", DEFAULT.name()).forGetter(CodecTestRecord::name),
+            DefaultedFieldCodec.of(Codec.INT, "count", DEFAULT.count()).forGetter(CodecTestRecord::count),
+            DefaultedFieldCodec.of(Codec.DOUBLE, "ratio", DEFAULT.ratio()).forGetter(CodecTestRecord::ratio),
+            DefaultedFieldCodec.of(Codec.BOOL, "enabled", DEFAULT.enabled()).forGetter(CodecTestRecord::enabled),
+            DefaultedFieldCodec.of(Codec.STRING.listOf(), "tags", DEFAULT.tags()).forGetter(CodecTestRecord::tags),
+            DefaultedFieldCodec.of(Codec.unboundedMap(Codec.STRING, Codec.INT.listOf()), "groups", DEFAULT.groups()).forGetter(CodecTestRecord::groups),
+            DefaultedFieldCodec.of(DFU_INNER_CODEC, "inner", DEFAULT.inner()).forGetter(CodecTestRecord::inner)
+    ).apply(instance, CodecTestRecord::new));
+    private static final MutableCodecTestRecord.StreamCodec STREAM_CODEC = new MutableCodecTestRecord.StreamCodec(DEFAULT);
+
+    private static final List<String> VALID = List.of(
+            "{}",
+            """
+            {"name": "x", "count": 5, "ratio": 2.5, "enabled": false, "tags": ["b", "c"], "groups": {"x": [3], "y": []}, "inner": {"a": "y", "b": 9}}
+            """,
+            // Null is the same as a missing field
+            "{\"name\": null, \"count\": null, \"inner\": null}",
+            "{\"inner\": {\"a\": null}}",
+            "{\"count\": 1, \"count\": null}",
+            // Booleans are read from numbers through their byte value
+            "{\"enabled\": 256}",
+            "{\"enabled\": 1}",
+            "{\"enabled\": 0.5}",
+            // Numbers are converted like lazily parsed gson numbers
+            "{\"name\": 12.50}",
+            "{\"count\": 1.9, \"ratio\": 3}",
+            "{\"count\": 3000000000}",
+            "{\"count\": true, \"ratio\": false}",
+            "{\"ratio\": 1e400}",
+            "{\"inner\": {\"b\": 1.5e3}}",
+            // Duplicate keys keep the last value
+            "{\"name\": \"a\", \"name\": \"b\"}",
+            "{\"groups\": {\"a\": [1], \"b\": [], \"a\": [2]}}",
+            "{\"unknown\": {\"nested\": [1, null]}, \"other\": null}"
+    );
+    private static final List<String> INVALID = List.of(
+            "[]",
+            "{\"count\": \"5\"}",
+            "{\"name\": true}",
+            "{\"enabled\": \"true\"}",
+            "{\"tags\": \"a\"}",
+            "{\"tags\": [null]}",
+            "{\"groups\": {\"a\": null}}",
+            "{\"groups\": [1]}",
+            "{\"inner\": 5}"
+    );
+
+    @Test
+    public void decodesLikeDfu() throws IOException {
+        for (var input : VALID) {
+            var tree = JsonParser.parseString(input);
+            var expected = DFU_CODEC.parse(JsonOps.INSTANCE, tree).result().orElseThrow(() -> new AssertionError("DFU failed to decode " + input));
+            assertEquals(expected, readStreaming(input), () -> "Streaming decode of " + input);
+            assertEquals(expected, STREAM_CODEC.parse(JsonOps.INSTANCE, tree).result().orElse(null), () -> "Tree decode of " + input);
+        }
+    }
+
+    @Test
+    public void failsLikeDfu() {
+        for (var input : INVALID) {
+            var tree = JsonParser.parseString(input);
+            assertTrue(DFU_CODEC.parse(JsonOps.INSTANCE, tree).result().isEmpty(), () -> "DFU decoded " + input);
+            assertThrows(JsonParseException.class, () -> readStreaming(input), "Streaming decode of " + input);
+            assertTrue(STREAM_CODEC.parse(JsonOps.INSTANCE, tree).result().isEmpty(), () -> "Tree decode of " + input);
+        }
+    }
+
+    @Test
+    public void encodesLikeDfu() {
+        var values = List.of(
+                DEFAULT,
+                new CodecTestRecord("", -3, 1e-9, false, List.of(), Map.of(), new CodecTestRecord.InnerCodecTestRecord("\"quoted\"", Long.MAX_VALUE)),
+                new CodecTestRecord("x", Integer.MIN_VALUE, Double.MAX_VALUE, true, List.of("a", "b"), Map.of("k", List.of(1, -1)), DEFAULT_INNER)
+        );
+        for (var value : values) {
+            var expected = DFU_CODEC.encodeStart(JsonOps.INSTANCE, value).result().orElseThrow();
+            assertEquals(expected, STREAM_CODEC.encodeStart(JsonOps.INSTANCE, value).result().orElseThrow());
+            assertEquals(expected, JsonParser.parseString(STREAM_CODEC.toPrettyString(value)));
+            assertEquals(value, STREAM_CODEC.parse(JsonOps.INSTANCE, expected).result().orElseThrow());
+        }
+    }
+
+    /**
+     * Reads like config managers do when loading files.
+     */
+    private static CodecTestRecord readStreaming(String input) throws IOException {
+        var reader = new JsonReader(new StringReader(input));
+        reader.setLenient(true);
+        return STREAM_CODEC.read(reader);
+    }
+}
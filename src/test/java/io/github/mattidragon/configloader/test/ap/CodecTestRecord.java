@@ -0,0 +1,15 @@
+package io.github.mattidragon.configloader.test.ap;
+
+import io.github.mattidragon.configloader.api.GenerateMutable;
+
+import java.util.List;
+import java.util.Map;
+
+@GenerateMutable(generateCodec = true)
+public record CodecTestRecord(String name, int count, Double ratio, boolean enabled, List<String> tags, Map<String, List<Integer>> groups, InnerCodecTestRecord inner) implements MutableCodecTestRecord.Source {
+
+    @GenerateMutable(generateCodec = true)
+    public record InnerCodecTestRecord(String a, long b) implements MutableCodecTestRecord.MutableInnerCodecTestRecord.Source {
+
+    }
+}
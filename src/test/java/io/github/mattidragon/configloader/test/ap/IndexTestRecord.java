@@ -0,0 +1,12 @@
+package io.github.mattidragon.configloader.test.ap;
+
+import io.github.mattidragon.configloader.api.GenerateMutable;
+import io.github.mattidragon.configloader.api.Indexed;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@GenerateMutable
+public record IndexTestRecord(@Indexed List<String> blocks, @Indexed(Indexed.Kind.PREFIX) List<String> namespaces, @Indexed Set<Integer> ids, @Indexed Map<Long, String> names, List<String> unindexed) implements MutableIndexTestRecord.Source {
+}